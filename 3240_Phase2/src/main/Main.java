@@ -12,10 +12,14 @@ import java.util.*;
 import javax.swing.*;
 import javax.swing.event.DocumentEvent;
 import javax.swing.event.DocumentListener;
+import javax.swing.text.BadLocationException;
 import parser.LLParser;
 import parser.MiniREErrorException;
+import scanner.IncrementalLexer;
+import scanner.ScriptScanResult;
 import scanner.ScriptScanner;
-import walker.ASTWalker;
+import walker.compiled.ASTCompiler;
+import walker.compiled.CompiledScript;
 import walker.exceptions.ASTExecutionException;
 import walker.expressions.*;
 import walker.statements.*;
@@ -28,8 +32,11 @@ public class Main extends JPanel {
     private JRootPane root;
     boolean interpretMode = false;
     private JButton interpretLabel;
+    private IncrementalLexer lexer;
 
     public static void main(String[] args) {
+        ScriptScanner.preload();
+
         JFrame frame = new JFrame("Phase II");
         frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 
@@ -76,6 +83,12 @@ public class Main extends JPanel {
         code = new JTextArea(20, 70);
         JScrollPane codeScroll = new JScrollPane(code);
         code.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 15));
+        try {
+            lexer = ScriptScanner.incrementalLexer();
+        } catch (Exception ex) {
+            // Without a lexer every run scans the whole script
+            lexer = null;
+        }
         code.getDocument().addDocumentListener(new CodeListener());
 
         setupShortcuts();
@@ -117,34 +130,40 @@ public class Main extends JPanel {
             if (interpretMode) {
                 tree = TreeSaver.load(input);
             } else {
-                ScriptScanner.scan(input, directory);
+                ScriptScanResult result;
+                if (lexer != null) {
+                    result = lexer.toScanResult();
+                    result.checkIDs();
+                } else {
+                    result = ScriptScanner.scan(input, directory);
+                }
                 System.out.println("-> Tokens:");
-                for (String a : ScriptScanner.tokens) {
+                for (String a : result.tokenQueue()) {
                     System.out.println(a);
                 }
                 System.out.println("-> String Constants:");
-                for (String a : ScriptScanner.strconsts) {
+                for (String a : result.getStrconsts()) {
                     System.out.println(a);
                 }
                 System.out.println("-> Identifiers:");
-                for (String a : ScriptScanner.identifiers) {
+                for (String a : result.getIdentifiers()) {
                     System.out.println(a);
                 }
                 System.out.println("-> Regexes:");
-                for (String a : ScriptScanner.regexes) {
+                for (String a : result.getRegexes()) {
                     System.out.println(a);
                 }
                 System.out.println("End");
 
-                LLParser parser = new LLParser(ScriptScanner.identifiers, ScriptScanner.regexes, ScriptScanner.tokens);
+                LLParser parser = new LLParser(result.tokenStream());
                 tree = parser.parse();
                 TreeSaver.save(tree, new File(directory, "ast.c"));
 
             }
 
-            ASTWalker walker = new ASTWalker(stream, directory);
+            CompiledScript script = ASTCompiler.compile(tree);
             try {
-                walker.walk(tree);
+                script.run(stream, directory);
             } catch (ASTExecutionException ex) {
                 stream.println("!! " + ex.getMessage());
                 JOptionPane.showMessageDialog(this, ex.getMessage(), "Runtime Error!", JOptionPane.ERROR_MESSAGE);
@@ -307,11 +326,21 @@ public class Main extends JPanel {
         }
 
         public void insertUpdate(DocumentEvent de) {
+            if (lexer != null) {
+                try {
+                    lexer.insert(de.getOffset(), de.getDocument().getText(de.getOffset(), de.getLength()));
+                } catch (BadLocationException ex) {
+                    lexer.setText(code.getText());
+                }
+            }
             setUpdated();
         }
 
         @Override
         public void removeUpdate(DocumentEvent de) {
+            if (lexer != null) {
+                lexer.remove(de.getOffset(), de.getLength());
+            }
             setUpdated();
         }
 
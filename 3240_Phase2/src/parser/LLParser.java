@@ -1,34 +1,31 @@
 package parser;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
-import java.io.IOException;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Deque;
-import java.util.HashMap;
+import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
 import java.util.Stack;
 
 import ast.AbstractSyntaxTree;
 import ast.ExpressionNode;
 import ast.StatementNode;
+import scanner.TokenStream;
 
+/**
+ * Parses the tokens of a MiniRE script into an AbstractSyntaxTree.
+ *
+ * The parse table and the productions come from {@link LLTable}, which is
+ * generated from grammar_rule.txt by {@link LLTableGenerator}. They are shared
+ * by all parsers, so creating a parser costs nothing but its stacks.
+ */
 public class LLParser {
 	
-	Map<TOKEN_TYPE, Map<TOKEN_TYPE, RULE_NUMER>> parseTable;
-	
-	
-	List<String> identifiers;
-	List<String> regexes;
 	Stack<TOKEN_TYPE> parseStack;
-	Deque<String> inputStack;
+	TokenStream input;
 	
 	Stack<ExpressionNode> expressionNodeStack;
-	
-	
-	Map<RULE_NUMER, List<TOKEN_TYPE>> grammarDef;
 
 	enum TOKEN_TYPE{ID, REPLACE, RECURSIVEREPLACE, REGEX, WITH, ASCII_STR, IN, EMPTY, MAXFREQSTRING,
 					LEFT_PAREN, RIGHT_PAREN, HASH_TAG, EXC_MARK, DIFF, UNION, INTERS, FIND, PRINT, COMMA, 
@@ -45,162 +42,124 @@ public class LLParser {
 					EXP_TAIL2, TERM, FILENAME, BIN_OP1, BIN_OP2, BIN_OP3};
 
 	
-	TOKEN_TYPE[] nonTermArray = {TOKEN_TYPE.MINIRE, TOKEN_TYPE.STATEMENT_LIST, TOKEN_TYPE.STATEMENT_LIST_TAIL, 
+	static final TOKEN_TYPE[] nonTermArray = {TOKEN_TYPE.MINIRE, TOKEN_TYPE.STATEMENT_LIST, TOKEN_TYPE.STATEMENT_LIST_TAIL, 
 			TOKEN_TYPE.STATEMENT, TOKEN_TYPE.ID_STATEMENT, TOKEN_TYPE.FILE_NAMES, TOKEN_TYPE.SOURCE_FILE, 
 			TOKEN_TYPE.DESTINATION_FILE, TOKEN_TYPE.EXP_LIST, TOKEN_TYPE.EXP_LIST_TAIL, TOKEN_TYPE.EXP, TOKEN_TYPE.EXP_TAIL, 
 			TOKEN_TYPE.TERM, TOKEN_TYPE.FILENAME, TOKEN_TYPE.BIN_OP};
 					
-	TOKEN_TYPE[] termArray = {TOKEN_TYPE.ID, TOKEN_TYPE.REPLACE, TOKEN_TYPE.RECURSIVEREPLACE, TOKEN_TYPE.REGEX,
+	static final TOKEN_TYPE[] termArray = {TOKEN_TYPE.ID, TOKEN_TYPE.REPLACE, TOKEN_TYPE.RECURSIVEREPLACE, TOKEN_TYPE.REGEX,
 			TOKEN_TYPE.WITH, TOKEN_TYPE.ASCII_STR, TOKEN_TYPE.IN, TOKEN_TYPE.EMPTY, TOKEN_TYPE.MAXFREQSTRING,
 			TOKEN_TYPE.LEFT_PAREN, TOKEN_TYPE.RIGHT_PAREN, TOKEN_TYPE.HASH_TAG, TOKEN_TYPE.EXC_MARK, TOKEN_TYPE.DIFF, 
 			TOKEN_TYPE.UNION, TOKEN_TYPE.INTERS, TOKEN_TYPE.FIND, TOKEN_TYPE.PRINT, TOKEN_TYPE.COMMA, 
 			TOKEN_TYPE.EQUAL_SIGN, TOKEN_TYPE.SEMI_COLON, TOKEN_TYPE.BEGIN, TOKEN_TYPE.END};
 	
-	TOKEN_TYPE[] otherArray = {TOKEN_TYPE.SOURCE_FILE, TOKEN_TYPE.DESTINATION_FILE, TOKEN_TYPE.FILE_NAMES}; 
-	
-	String [] extraTokenArray = {"(", ")", ";", "in", "end", "find", "maxfreqstring", ","};
-	
-	
+	static final TOKEN_TYPE[] otherArray = {TOKEN_TYPE.SOURCE_FILE, TOKEN_TYPE.DESTINATION_FILE, TOKEN_TYPE.FILE_NAMES}; 
+	
+	static final int [] extraTokenArray = {TokenStream.LEFT_PAREN, TokenStream.RIGHT_PAREN, TokenStream.SEMI_COLON, TokenStream.IN,
+			TokenStream.END, TokenStream.FIND, TokenStream.MAXFREQSTRING, TokenStream.COMMA};
+	
+	//The terminal for each token code of the scanner
+	static final TOKEN_TYPE[] TOKEN_TYPES = new TOKEN_TYPE[TokenStream.CODE_COUNT];
+	static {
+		TOKEN_TYPES[TokenStream.ID] = TOKEN_TYPE.ID;
+		TOKEN_TYPES[TokenStream.REGEX] = TOKEN_TYPE.REGEX;
+		TOKEN_TYPES[TokenStream.ASCII_STR] = TOKEN_TYPE.ASCII_STR;
+		TOKEN_TYPES[TokenStream.BEGIN] = TOKEN_TYPE.BEGIN;
+		TOKEN_TYPES[TokenStream.END] = TOKEN_TYPE.END;
+		TOKEN_TYPES[TokenStream.EQUAL_SIGN] = TOKEN_TYPE.EQUAL_SIGN;
+		TOKEN_TYPES[TokenStream.REPLACE] = TOKEN_TYPE.REPLACE;
+		TOKEN_TYPES[TokenStream.RECURSIVEREPLACE] = TOKEN_TYPE.RECURSIVEREPLACE;
+		TOKEN_TYPES[TokenStream.WITH] = TOKEN_TYPE.WITH;
+		TOKEN_TYPES[TokenStream.IN] = TOKEN_TYPE.IN;
+		TOKEN_TYPES[TokenStream.REDIRECT] = TOKEN_TYPE.EXC_MARK;
+		TOKEN_TYPES[TokenStream.SEMI_COLON] = TOKEN_TYPE.SEMI_COLON;
+		TOKEN_TYPES[TokenStream.PRINT] = TOKEN_TYPE.PRINT;
+		TOKEN_TYPES[TokenStream.LEFT_PAREN] = TOKEN_TYPE.LEFT_PAREN;
+		TOKEN_TYPES[TokenStream.RIGHT_PAREN] = TOKEN_TYPE.RIGHT_PAREN;
+		TOKEN_TYPES[TokenStream.COMMA] = TOKEN_TYPE.COMMA;
+		TOKEN_TYPES[TokenStream.HASH_TAG] = TOKEN_TYPE.HASH_TAG;
+		TOKEN_TYPES[TokenStream.FIND] = TOKEN_TYPE.FIND;
+		TOKEN_TYPES[TokenStream.DIFF] = TOKEN_TYPE.DIFF;
+		TOKEN_TYPES[TokenStream.UNION] = TOKEN_TYPE.UNION;
+		TOKEN_TYPES[TokenStream.INTERS] = TOKEN_TYPE.INTERS;
+		TOKEN_TYPES[TokenStream.MAXFREQSTRING] = TOKEN_TYPE.MAXFREQSTRING;
+	}
 	
-	List<TOKEN_TYPE> otherTokens = Arrays.asList(otherArray);
-	List<TOKEN_TYPE> nonTermTokens = Arrays.asList(nonTermArray);
-	List<TOKEN_TYPE> termTokens = Arrays.asList(termArray);
-	List<String> extraTokens = Arrays.asList(extraTokenArray);
+	static final Set<TOKEN_TYPE> otherTokens = EnumSet.copyOf(Arrays.asList(otherArray));
+	static final Set<TOKEN_TYPE> nonTermTokens = EnumSet.copyOf(Arrays.asList(nonTermArray));
+	static final Set<TOKEN_TYPE> termTokens = EnumSet.copyOf(Arrays.asList(termArray));
+	static final boolean[] extraTokens = new boolean[TokenStream.CODE_COUNT];
+	
+	static final TOKEN_TYPE[] SYMBOLS = TOKEN_TYPE.values();
+	static final RULE_NUMER[] RULES = RULE_NUMER.values();
+	//The productions of LLTable by rule, as symbols
+	static final TOKEN_TYPE[][] PRODUCTIONS = new TOKEN_TYPE[RULES.length][];
+	static {
+		if(LLTable.TOKEN_TYPE_COUNT != SYMBOLS.length || LLTable.RULE_COUNT != RULES.length){
+			throw new IllegalStateException("LLTable does not match the parser, run parser.LLTableGenerator");
+		}
+		for(int rule=0; rule<RULES.length; rule++){
+			PRODUCTIONS[rule] = new TOKEN_TYPE[LLTable.PRODUCTIONS[rule].length];
+			for(int i=0; i<PRODUCTIONS[rule].length; i++){
+				PRODUCTIONS[rule][i] = SYMBOLS[LLTable.PRODUCTIONS[rule][i]];
+			}
+		}
+		for(int code : extraTokenArray){
+			extraTokens[code] = true;
+		}
+	}
 	
+	/**
+	 * Creates a parser for token texts. Each token is an identifier if it is in ids, 
+	 * a regex if it is in regex, a keyword if it is one and a string otherwise.
+	 */
 	public LLParser(List<String> ids, List<String>regex, Deque<String> input){
-		identifiers = ids; 
-		this.regexes = regex;
-		this.inputStack = input;
+		this(toTokenStream(ids, regex, input));
+	}
+	
+	/**
+	 * Creates a parser that consumes the given tokens.
+	 */
+	public LLParser(TokenStream input){
+		this.input = input;
 		expressionNodeStack = new Stack<ExpressionNode>();
 		parseStack = new Stack<TOKEN_TYPE>();
 		parseStack.push(TOKEN_TYPE.MINIRE);
-		generateLLTable();
 	}
 	
-	private void generateLLTable(){
-		initializeGrammarRule();
-		
-		parseTable = new HashMap<LLParser.TOKEN_TYPE, Map<TOKEN_TYPE,RULE_NUMER>>();
-		
-		
-		//MINIRE Row
-		TOKEN_TYPE currTokenType = TOKEN_TYPE.MINIRE;
-		Map<TOKEN_TYPE, RULE_NUMER> tableRow= new HashMap<LLParser.TOKEN_TYPE, LLParser.RULE_NUMER>();
-		tableRow.put(TOKEN_TYPE.BEGIN, RULE_NUMER.MINIRE);
-		parseTable.put(currTokenType, tableRow);
-
-		//Statment-List Row
-		currTokenType = TOKEN_TYPE.STATEMENT_LIST;
-		tableRow = new HashMap<LLParser.TOKEN_TYPE, LLParser.RULE_NUMER>();
-		tableRow.put(TOKEN_TYPE.ID, RULE_NUMER.STATEMENT_LIST);
-		tableRow.put(TOKEN_TYPE.REPLACE, RULE_NUMER.STATEMENT_LIST);
-		tableRow.put(TOKEN_TYPE.RECURSIVEREPLACE, RULE_NUMER.STATEMENT_LIST);
-		tableRow.put(TOKEN_TYPE.PRINT, RULE_NUMER.STATEMENT_LIST);
-		parseTable.put(currTokenType, tableRow);
-		
-		
-		//Statment-List-Tail Row
-		currTokenType = TOKEN_TYPE.STATEMENT_LIST_TAIL;
-		tableRow = new HashMap<LLParser.TOKEN_TYPE, LLParser.RULE_NUMER>();
-		tableRow.put(TOKEN_TYPE.ID, RULE_NUMER.STATEMENT_LIST_TAIL1);
-		tableRow.put(TOKEN_TYPE.REPLACE, RULE_NUMER.STATEMENT_LIST_TAIL1);
-		tableRow.put(TOKEN_TYPE.RECURSIVEREPLACE, RULE_NUMER.STATEMENT_LIST_TAIL1);
-		tableRow.put(TOKEN_TYPE.PRINT, RULE_NUMER.STATEMENT_LIST_TAIL1);
-		tableRow.put(TOKEN_TYPE.EMPTY, RULE_NUMER.STATEMENT_LIST_TAIL2);
-		parseTable.put(currTokenType, tableRow);
-		
-		//Statment Row
-		currTokenType = TOKEN_TYPE.STATEMENT;
-		tableRow = new HashMap<LLParser.TOKEN_TYPE, LLParser.RULE_NUMER>();
-		tableRow.put(TOKEN_TYPE.ID, RULE_NUMER.STATEMENT1);
-		tableRow.put(TOKEN_TYPE.REPLACE, RULE_NUMER.STATEMENT2);
-		tableRow.put(TOKEN_TYPE.RECURSIVEREPLACE, RULE_NUMER.STATEMENT3);
-		tableRow.put(TOKEN_TYPE.PRINT, RULE_NUMER.STATEMENT4);
-		parseTable.put(currTokenType, tableRow);
-		
-		//ID-Statement Row
-		currTokenType = TOKEN_TYPE.ID_STATEMENT;
-		tableRow = new HashMap<LLParser.TOKEN_TYPE, LLParser.RULE_NUMER>();
-		tableRow.put(TOKEN_TYPE.HASH_TAG, RULE_NUMER.ID_STATEMENT2);
-		tableRow.put(TOKEN_TYPE.MAXFREQSTRING, RULE_NUMER.ID_STATEMENT3);
-		tableRow.put(TOKEN_TYPE.ID, RULE_NUMER.ID_STATEMENT1);
-		tableRow.put(TOKEN_TYPE.LEFT_PAREN, RULE_NUMER.ID_STATEMENT1);
-		tableRow.put(TOKEN_TYPE.FIND, RULE_NUMER.ID_STATEMENT1);
-		parseTable.put(currTokenType, tableRow);
-		
-		//FILE_NAMEs Row
-		currTokenType = TOKEN_TYPE.FILE_NAMES;
-		tableRow = new HashMap<LLParser.TOKEN_TYPE, LLParser.RULE_NUMER>();
-		tableRow.put(TOKEN_TYPE.ASCII_STR, RULE_NUMER.FILE_NAMES);
-		parseTable.put(currTokenType, tableRow);
-		
-		//SOURCE_FILE Row
-		currTokenType = TOKEN_TYPE.SOURCE_FILE;
-		tableRow = new HashMap<LLParser.TOKEN_TYPE, LLParser.RULE_NUMER>();
-		tableRow.put(TOKEN_TYPE.ASCII_STR, RULE_NUMER.SOURCE_FILE);
-		parseTable.put(currTokenType, tableRow);
-
-		//DESTINATION_FILE Row
-		currTokenType = TOKEN_TYPE.DESTINATION_FILE;
-		tableRow = new HashMap<LLParser.TOKEN_TYPE, LLParser.RULE_NUMER>();
-		tableRow.put(TOKEN_TYPE.ASCII_STR, RULE_NUMER.DESTINATION_FILE);
-		parseTable.put(currTokenType, tableRow);
-		
-		//EXP_LIST Row
-		currTokenType = TOKEN_TYPE.EXP_LIST;
-		tableRow = new HashMap<LLParser.TOKEN_TYPE, LLParser.RULE_NUMER>();
-		tableRow.put(TOKEN_TYPE.ID, RULE_NUMER.EXP_LIST);
-		tableRow.put(TOKEN_TYPE.LEFT_PAREN, RULE_NUMER.EXP_LIST);
-		tableRow.put(TOKEN_TYPE.FIND, RULE_NUMER.EXP_LIST);
-		parseTable.put(currTokenType, tableRow);
-		
-		//EXP_LIST_TAIL Row
-		currTokenType = TOKEN_TYPE.EXP_LIST_TAIL;
-		tableRow = new HashMap<LLParser.TOKEN_TYPE, LLParser.RULE_NUMER>();
-		tableRow.put(TOKEN_TYPE.COMMA, RULE_NUMER.EXP_LIST_TAIL);
-		tableRow.put(TOKEN_TYPE.EMPTY, RULE_NUMER.EXP_LIST_TAIL1);
-		parseTable.put(currTokenType, tableRow);
-		
-		//EXP Row
-		currTokenType = TOKEN_TYPE.EXP;
-		tableRow = new HashMap<LLParser.TOKEN_TYPE, LLParser.RULE_NUMER>();
-		tableRow.put(TOKEN_TYPE.ID, RULE_NUMER.EXP1);
-		tableRow.put(TOKEN_TYPE.FIND, RULE_NUMER.EXP3);
-		//tableRow.put(TOKEN_TYPE.ID, RULE_NUMER.EXP2);
-		tableRow.put(TOKEN_TYPE.LEFT_PAREN, RULE_NUMER.EXP2);
-		parseTable.put(currTokenType, tableRow);
-		
-		//EXP_TAIL Row
-		currTokenType = TOKEN_TYPE.EXP_TAIL;
-		tableRow = new HashMap<LLParser.TOKEN_TYPE, LLParser.RULE_NUMER>();
-		tableRow.put(TOKEN_TYPE.DIFF, RULE_NUMER.EXP_TAIL1);
-		tableRow.put(TOKEN_TYPE.UNION, RULE_NUMER.EXP_TAIL1);
-		tableRow.put(TOKEN_TYPE.INTERS, RULE_NUMER.EXP_TAIL1);
-		tableRow.put(TOKEN_TYPE.EMPTY, RULE_NUMER.EXP_TAIL2);
-		parseTable.put(currTokenType, tableRow);
-		
-		//TERM Row
-		currTokenType = TOKEN_TYPE.TERM;
-		tableRow = new HashMap<LLParser.TOKEN_TYPE, LLParser.RULE_NUMER>();
-		tableRow.put(TOKEN_TYPE.FIND, RULE_NUMER.TERM);
-		parseTable.put(currTokenType, tableRow);
-		
-		//FILENAME Row
-		currTokenType = TOKEN_TYPE.FILENAME;
-		tableRow = new HashMap<LLParser.TOKEN_TYPE, LLParser.RULE_NUMER>();
-		tableRow.put(TOKEN_TYPE.ASCII_STR, RULE_NUMER.FILENAME);
-		parseTable.put(currTokenType, tableRow);
-			
-		//BIN_OP Row
-		currTokenType = TOKEN_TYPE.BIN_OP;
-		tableRow = new HashMap<LLParser.TOKEN_TYPE, LLParser.RULE_NUMER>();
-		tableRow.put(TOKEN_TYPE.DIFF, RULE_NUMER.BIN_OP1);
-		tableRow.put(TOKEN_TYPE.UNION, RULE_NUMER.BIN_OP2);
-		tableRow.put(TOKEN_TYPE.INTERS, RULE_NUMER.BIN_OP3);
-		parseTable.put(currTokenType, tableRow);
-		
+	private static TokenStream toTokenStream(List<String> ids, List<String> regex, Deque<String> input){
+		Set<String> idSet = new HashSet<String>(ids);
+		Set<String> regexSet = new HashSet<String>(regex);
+		TokenStream.Builder builder = new TokenStream.Builder();
+		for(String token : input){
+			int code;
+			if(idSet.contains(token)){
+				code = TokenStream.ID;
+			}
+			else if(regexSet.contains(token)){
+				code = TokenStream.REGEX;
+			}
+			else{
+				code = TokenStream.keywordCode(token);
+				if(code == TokenStream.END_OF_INPUT){
+					code = TokenStream.ASCII_STR;
+				}
+			}
+			builder.add(code, token, 0, 0, 0);
+		}
+		return builder.build();
 	}
 	
+	/**
+	 * The terminal of the current token.
+	 */
+	private TOKEN_TYPE lookAhead() throws MiniREErrorException{
+		int code = input.peekCode();
+		if(code == TokenStream.END_OF_INPUT){
+			throw new MiniREErrorException("Unexpected end of input");
+		}
+		return TOKEN_TYPES[code];
+	}
 	
 	public AbstractSyntaxTree parse() throws MiniREErrorException{
 		AbstractSyntaxTree astTree = new AbstractSyntaxTree();
@@ -210,8 +169,7 @@ public class LLParser {
 		while(!parseStack.isEmpty()){
 			TOKEN_TYPE currentToken = parseStack.peek();
 			if(nonTermTokens.contains(currentToken)){
-				TOKEN_TYPE lookAheadToken = getTokenType(inputStack.peek());	
-				Map<TOKEN_TYPE, RULE_NUMER> currentRow = parseTable.get(currentToken);
+				TOKEN_TYPE lookAheadToken = lookAhead();	
 				RULE_NUMER newRule;
 //				if(lookAheadToken.equals(TOKEN_TYPE.LEFT_PAREN) && currentToken.equals(TOKEN_TYPE.EXP)){
 //					String tempToken = inputStack.pop();
@@ -229,22 +187,11 @@ public class LLParser {
 //				}
 				//else{
 					
-					if(lookAheadToken == TOKEN_TYPE.END){
-						newRule= currentRow.get(TOKEN_TYPE.EMPTY);
-					}
-					else if(currentToken.equals(TOKEN_TYPE.EXP_TAIL) && (lookAheadToken == TOKEN_TYPE.SEMI_COLON || lookAheadToken.equals(TOKEN_TYPE.RIGHT_PAREN))){
-						newRule= currentRow.get(TOKEN_TYPE.EMPTY);
-					}
-					else if(currentToken.equals(TOKEN_TYPE.EXP_LIST_TAIL) && (lookAheadToken == TOKEN_TYPE.RIGHT_PAREN || lookAheadToken.equals(TOKEN_TYPE.ASCII_STR))){
-						newRule= currentRow.get(TOKEN_TYPE.EMPTY);
-					}
-					else{
-						newRule = currentRow.get(lookAheadToken);	
-					}
-					
-					if(newRule == null){
+					int rule = LLTable.TABLE[currentToken.ordinal()][lookAheadToken.ordinal()];
+					if(rule < 0){
 						throw new MiniREErrorException("At "+ currentToken.toString() + " Looking ahead is: " + lookAheadToken.toString());
 					}
+					newRule = RULES[rule];
 					
 				//}
 				if(TOKEN_TYPE.STATEMENT.equals(currentToken)){
@@ -252,7 +199,7 @@ public class LLParser {
 					Object value;
 					if(newRule.equals(RULE_NUMER.STATEMENT1)){
 						type = "assign";
-						value = inputStack.peek();
+						value = input.peekText();
 					}
 					else if(newRule.equals(RULE_NUMER.STATEMENT2)){
 						type = "replace";
@@ -280,17 +227,17 @@ public class LLParser {
 				}
 				//Placing values into node values
 				if(currentToken.equals(TOKEN_TYPE.SOURCE_FILE)){
-					((String[]) currentStatementNode.value())[2]= inputStack.peek();
+					((String[]) currentStatementNode.value())[2]= input.peekText();
 				}
 				else if(currentToken.equals(TOKEN_TYPE.DESTINATION_FILE)){
-					((String[]) currentStatementNode.value())[3]= inputStack.peek();
+					((String[]) currentStatementNode.value())[3]= input.peekText();
 				}
 //				else if(currentToken.equals(TOKEN_TYPE.FILENAME)){
 //					((String[]) currentExpressionNode.value())[1]= inputStack.peek();
 //				}
 				
 				
-				List<TOKEN_TYPE> newTokens = grammarDef.get(newRule);
+				TOKEN_TYPE[] newTokens = PRODUCTIONS[rule];
 				
 				
 				//Create Expression Nodes
@@ -310,8 +257,8 @@ public class LLParser {
 				
 				//update expression node NEED a new stack for expression Nodes
 				TOKEN_TYPE newTokenType = parseStack.pop();
-				for(int i=newTokens.size()-1; i>=0; i--){
-					parseStack.push(newTokens.get(i));
+				for(int i=newTokens.length-1; i>=0; i--){
+					parseStack.push(newTokens[i]);
 				}
 				if(!(TOKEN_TYPE.STATEMENT.equals(newTokenType) || TOKEN_TYPE.MINIRE.equals(newTokenType)
 						|| TOKEN_TYPE.STATEMENT_LIST.equals(newTokenType) || TOKEN_TYPE.STATEMENT_LIST_TAIL.equals(newTokenType))
@@ -326,10 +273,10 @@ public class LLParser {
 						currentExpressionNode = tempExpressionNode;
 					}
 					
-					for(int i=newTokens.size()-1; i>=0; i--){
-						ExpressionNode newExpressionNode = new ExpressionNode(newTokens.get(i).toString(), null);
+					for(int i=newTokens.length-1; i>=0; i--){
+						ExpressionNode newExpressionNode = new ExpressionNode(newTokens[i].toString(), null);
 						
-						if(nonTermTokens.contains(newTokens.get(i)) && (!otherTokens.contains(newTokens.get(i))) ){
+						if(nonTermTokens.contains(newTokens[i]) && (!otherTokens.contains(newTokens[i])) ){
 							expressionNodeStack.push(newExpressionNode);
 							currentExpressionNode.addSubnode(newExpressionNode);
 						}
@@ -339,7 +286,7 @@ public class LLParser {
 			}
 			else{
 				TOKEN_TYPE parseToken = parseStack.peek();
-				TOKEN_TYPE lookAheadToken = getTokenType(inputStack.peek());;
+				TOKEN_TYPE lookAheadToken = lookAhead();;
 				
 				if(parseToken.equals(TOKEN_TYPE.EMPTY)){
 					parseStack.pop();
@@ -348,11 +295,11 @@ public class LLParser {
 				else if(!parseToken.equals(TOKEN_TYPE.EMPTY) && parseToken.equals(lookAheadToken)){
 					if(currentExpressionNode == null){
 						if(currentToken.equals(TOKEN_TYPE.REGEX)){
-							((String[]) currentStatementNode.value())[0]= inputStack.peek();
+							((String[]) currentStatementNode.value())[0]= input.peekText();
 						}
 						if(currentToken.equals(TOKEN_TYPE.ASCII_STR)){
 							if(((String[]) currentStatementNode.value())[1]==null){
-								((String[]) currentStatementNode.value())[1]= inputStack.peek();
+								((String[]) currentStatementNode.value())[1]= input.peekText();
 							}
 						}
 					}
@@ -360,11 +307,10 @@ public class LLParser {
 //						if(currentToken.equals(TOKEN_TYPE.REGEX)){
 //							((String[]) currentExpressionNode.value())[0]= inputStack.peek();
 //						}
-						String currentString = inputStack.peek();
-						if(!extraTokens.contains(currentString)){
+						if(!extraTokens[input.peekCode()]){
 						
 							if(currentExpressionNode.value() == null){
-								currentExpressionNode.setValue(inputStack.peek());
+								currentExpressionNode.setValue(input.peekText());
 							}
 							else{
 								String [] newValue;
@@ -372,7 +318,7 @@ public class LLParser {
 								if(oldValue instanceof String){
 									newValue = new String[2];
 									newValue[0] = (String) oldValue;
-									newValue[1] = inputStack.peek();
+									newValue[1] = input.peekText();
 								}
 								else{
 									String [] interValue = (String[]) oldValue;
@@ -381,7 +327,7 @@ public class LLParser {
 									for(; i<interValue.length; i++){
 										newValue[i] = interValue[i];
 									}
-									newValue[i] = inputStack.peek();
+									newValue[i] = input.peekText();
 									
 								}
 								currentExpressionNode.setValue(newValue);
@@ -389,7 +335,7 @@ public class LLParser {
 						}
 					}
 					parseStack.pop();
-					inputStack.pop();
+					input.advance();
 				}
 				else{
 					throw new MiniREErrorException("Terminial Token: "+parseToken.toString() + "    Matching: " + lookAheadToken.toString());
@@ -397,7 +343,7 @@ public class LLParser {
 			}
 		}
 		
-		if(inputStack.isEmpty()){
+		if(!input.hasNext()){
 			return astTree;
 		}
 		else{
@@ -411,41 +357,10 @@ public class LLParser {
 	
 	
 	
-	private void initializeGrammarRule(){
-		grammarDef = new HashMap<RULE_NUMER, List<TOKEN_TYPE>>();
-		
-		try{
-		
-			FileReader file = new FileReader("grammar_rule.txt");
-	    	BufferedReader reader = new BufferedReader(file);
-	    	String line;
-	    	while((line = reader.readLine()) != null){
-	    		String [] tokens = line.split(" ");
-	    		RULE_NUMER ruleNum = LLParserHelper.getRuleNumber(tokens[0]);
-	    		List<TOKEN_TYPE> rules = new ArrayList<TOKEN_TYPE>();
-	    		for(int i=1; i<tokens.length; i++){
-	    			TOKEN_TYPE tokenType = LLParserHelper.getTokenType(tokens[i]);
-	    			rules.add(tokenType);
-	    		}
-	    		grammarDef.put(ruleNum, rules);
-	    	}
-	    	
-	    	
-		}catch(IOException e){
-			e.printStackTrace();
-		}
-			
-		
-	}
-	
-	
-	
-
-	
 public String rulesToString(){
 	StringBuilder sb = new StringBuilder();
-	for(RULE_NUMER ruleNum : grammarDef.keySet()){
-		List<TOKEN_TYPE> tokens = grammarDef.get(ruleNum);
+	for(RULE_NUMER ruleNum : RULES){
+		TOKEN_TYPE[] tokens = PRODUCTIONS[ruleNum.ordinal()];
 		sb.append("<" + ruleNum.toString() + ">   ");
 		for(TOKEN_TYPE token : tokens){
 			sb.append(token.toString()+ " ");
@@ -461,14 +376,13 @@ public String tableToString(){
 	StringBuilder sb = new StringBuilder();
 	
 	for(TOKEN_TYPE nonToken: nonTermTokens){
-		Map<TOKEN_TYPE, RULE_NUMER> map = parseTable.get(nonToken);
+		int[] row = LLTable.TABLE[nonToken.ordinal()];
 		sb.append(nonToken.toString()+"      ");
-		if(map != null){
+		if(row != null){
 			for(TOKEN_TYPE token : termTokens){
-				RULE_NUMER rule = map.get(token);
-				String s;
-				if(rule != null){
-					sb.append(token.toString() + " : " + rule.toString() + "     ");
+				int rule = row[token.ordinal()];
+				if(rule >= 0){
+					sb.append(token.toString() + " : " + RULES[rule].toString() + "     ");
 				}
 						
 			}
@@ -479,85 +393,5 @@ public String tableToString(){
 	
 	return sb.toString();
 }
-	
-	
-	
-	
-private TOKEN_TYPE getTokenType(String token){
-		
-		if(identifiers.contains(token)){
-			return TOKEN_TYPE.ID;
-		}
-		else if(regexes.contains(token)){
-			return TOKEN_TYPE.REGEX;
-		}
-		else if(token.equals("replace")){
-			return TOKEN_TYPE.REPLACE;
-		}
-		else if(token.equals("recursivereplace")){
-			return TOKEN_TYPE.RECURSIVEREPLACE;
-		}
-		else if(token.equals("maxfreqstring")){
-			return TOKEN_TYPE.MAXFREQSTRING;
-		}
-		else if(token.equals("(")){
-			return TOKEN_TYPE.LEFT_PAREN;
-		}
-		else if(token.equals(")")){
-			return TOKEN_TYPE.RIGHT_PAREN;
-		}
-		else if(token.equals("find")){
-			return TOKEN_TYPE.FIND;
-		}
-		else if(token.equals("with")){
-			return TOKEN_TYPE.WITH;
-		}
-		else if(token.equals(">!")){
-			return TOKEN_TYPE.EXC_MARK;
-		}
-		else if(token.equals("diff")){
-			return TOKEN_TYPE.DIFF;
-		}
-		else if(token.equals("union")){
-			return TOKEN_TYPE.UNION;
-		}
-		else if(token.equals("inters")){
-			return TOKEN_TYPE.INTERS;
-		}
-		else if(token.equals("in")){
-			return TOKEN_TYPE.IN;
-		}
-		else if(token.equals("#")){
-			return TOKEN_TYPE.HASH_TAG;
-		}
-		else if(token.equals(",")){
-			return TOKEN_TYPE.COMMA;
-		}
-		
-		else if(token.equals("=")){
-			return TOKEN_TYPE.EQUAL_SIGN;
-		}
-		
-		else if(token.equals(";")){
-			return TOKEN_TYPE.SEMI_COLON;
-		}
-		else if(token.equals("begin")){
-			return TOKEN_TYPE.BEGIN;
-		}
-		
-		else if(token.equals("end")){
-			return TOKEN_TYPE.END;
-		}
-		else if(token.equals("print")){
-			return TOKEN_TYPE.PRINT;
-		}
-		
-		else{
-			return TOKEN_TYPE.ASCII_STR;
-		}
-		
-	}
-	
 
-	
 }
@@ -101,13 +101,13 @@ public class LLParserHelper {
 	
 public static TOKEN_TYPE getTokenType(String token){
 		
-		if(token.contains("ID")){
+		if(token.equals("ID")){
 			return TOKEN_TYPE.ID;
 		}
-		else if(token.contains("REGEX")){
+		else if(token.equals("REGEX")){
 			return TOKEN_TYPE.REGEX;
 		}
-		else if(token.contains("empty")){
+		else if(token.equals("empty")){
 			return TOKEN_TYPE.EMPTY;
 		}
 		
@@ -0,0 +1,95 @@
+// Generated by parser.LLTableGenerator from grammar_rule.txt. Do not edit.
+package parser;
+
+/**
+ * The LL(1) parse table and the productions of the MiniRE grammar.
+ */
+final class LLTable {
+	/** The number of LLParser.TOKEN_TYPE values the table was generated for. */
+	static final int TOKEN_TYPE_COUNT = 38;
+	/** The number of LLParser.RULE_NUMER values the table was generated for. */
+	static final int RULE_COUNT = 27;
+
+	/**
+	 * The RULE_NUMER ordinal to expand a nonterminal with, by the TOKEN_TYPE
+	 * ordinals of the nonterminal and the lookahead, or -1 for a syntax error.
+	 * Rows of terminals are null.
+	 */
+	static final int[][] TABLE = {
+		/* ID */ null,
+		/* REPLACE */ null,
+		/* RECURSIVEREPLACE */ null,
+		/* REGEX */ null,
+		/* WITH */ null,
+		/* ASCII_STR */ null,
+		/* IN */ null,
+		/* EMPTY */ null,
+		/* MAXFREQSTRING */ null,
+		/* LEFT_PAREN */ null,
+		/* RIGHT_PAREN */ null,
+		/* HASH_TAG */ null,
+		/* EXC_MARK */ null,
+		/* DIFF */ null,
+		/* UNION */ null,
+		/* INTERS */ null,
+		/* FIND */ null,
+		/* PRINT */ null,
+		/* COMMA */ null,
+		/* EQUAL_SIGN */ null,
+		/* SEMI_COLON */ null,
+		/* BEGIN */ null,
+		/* END */ null,
+		/* MINIRE */ {-1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, 0, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1},
+		/* STATEMENT_LIST */ {1, 1, 1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, 1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1},
+		/* STATEMENT_LIST_TAIL */ {2, 2, 2, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, 2, -1, -1, -1, -1, 3, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1},
+		/* STATEMENT */ {4, 8, 9, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, 13, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1},
+		/* ID_STATEMENT */ {5, -1, -1, -1, -1, -1, -1, -1, 7, 5, -1, 6, -1, -1, -1, -1, 5, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1},
+		/* FILE_NAMES */ {-1, -1, -1, -1, -1, 10, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1},
+		/* SOURCE_FILE */ {-1, -1, -1, -1, -1, 11, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1},
+		/* DESTINATION_FILE */ {-1, -1, -1, -1, -1, 12, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1},
+		/* EXP_LIST */ {14, -1, -1, -1, -1, -1, -1, -1, -1, 14, -1, -1, -1, -1, -1, -1, 14, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1},
+		/* EXP_LIST_TAIL */ {-1, -1, -1, -1, -1, -1, -1, -1, -1, -1, 16, -1, -1, -1, -1, -1, -1, -1, 15, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1},
+		/* EXP */ {17, -1, -1, -1, -1, -1, -1, -1, -1, 18, -1, -1, -1, -1, -1, -1, 19, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1},
+		/* EXP_TAIL */ {-1, -1, -1, -1, -1, -1, -1, -1, -1, -1, 21, -1, -1, 20, 20, 20, -1, -1, 21, -1, 21, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1},
+		/* TERM */ {-1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, 22, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1},
+		/* FILENAME */ {-1, -1, -1, -1, -1, 23, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1},
+		/* BIN_OP */ {-1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, 24, 25, 26, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1},
+	};
+
+	/**
+	 * The right hand side of each rule as TOKEN_TYPE ordinals, by RULE_NUMER
+	 * ordinal.
+	 */
+	static final int[][] PRODUCTIONS = {
+		/* MINIRE */ {21, 24, 22},
+		/* STATEMENT_LIST */ {26, 25},
+		/* STATEMENT_LIST_TAIL1 */ {26, 25},
+		/* STATEMENT_LIST_TAIL2 */ {7},
+		/* STATEMENT1 */ {0, 19, 27, 20},
+		/* ID_STATEMENT1 */ {33},
+		/* ID_STATEMENT2 */ {11, 33},
+		/* ID_STATEMENT3 */ {8, 9, 0, 10},
+		/* STATEMENT2 */ {1, 3, 4, 5, 6, 28, 20},
+		/* STATEMENT3 */ {2, 3, 4, 5, 6, 28, 20},
+		/* FILE_NAMES */ {29, 12, 30},
+		/* SOURCE_FILE */ {5},
+		/* DESTINATION_FILE */ {5},
+		/* STATEMENT4 */ {17, 9, 31, 10, 20},
+		/* EXP_LIST */ {33, 32},
+		/* EXP_LIST_TAIL */ {18, 33, 32},
+		/* EXP_LIST_TAIL1 */ {7},
+		/* EXP1 */ {0},
+		/* EXP2 */ {9, 33, 10},
+		/* EXP3 */ {35, 34},
+		/* EXP_TAIL1 */ {37, 35, 34},
+		/* EXP_TAIL2 */ {7},
+		/* TERM */ {16, 3, 6, 36},
+		/* FILENAME */ {5},
+		/* BIN_OP1 */ {13},
+		/* BIN_OP2 */ {14},
+		/* BIN_OP3 */ {15},
+	};
+
+	private LLTable(){
+	}
+}
@@ -0,0 +1,256 @@
+package parser;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import parser.LLParser.RULE_NUMER;
+import parser.LLParser.TOKEN_TYPE;
+
+/**
+ * Builds the LL(1) parse table of MiniRE from grammar_rule.txt and writes it
+ * as the source of {@link LLTable}.
+ *
+ * The table is filled from the FIRST and FOLLOW sets of the grammar: a rule
+ * A -> x is chosen for every terminal in FIRST(x), and, if x can derive the
+ * empty string, for every terminal in FOLLOW(A). The symbol "empty" stands
+ * for the empty string. A grammar that is not LL(1) is rejected.
+ *
+ * Run it after changing the grammar:
+ * 	LLTableGenerator [grammar file] [source directory]
+ * which defaults to grammar_rule.txt and src.
+ */
+public class LLTableGenerator {
+
+	private final Map<RULE_NUMER, TOKEN_TYPE> heads = new EnumMap<RULE_NUMER, TOKEN_TYPE>(RULE_NUMER.class);
+	private final Map<RULE_NUMER, List<TOKEN_TYPE>> productions = new EnumMap<RULE_NUMER, List<TOKEN_TYPE>>(RULE_NUMER.class);
+	private final Set<TOKEN_TYPE> nonTerminals = EnumSet.noneOf(TOKEN_TYPE.class);
+	private final Set<TOKEN_TYPE> nullable = EnumSet.noneOf(TOKEN_TYPE.class);
+	private final Map<TOKEN_TYPE, Set<TOKEN_TYPE>> first = new EnumMap<TOKEN_TYPE, Set<TOKEN_TYPE>>(TOKEN_TYPE.class);
+	private final Map<TOKEN_TYPE, Set<TOKEN_TYPE>> follow = new EnumMap<TOKEN_TYPE, Set<TOKEN_TYPE>>(TOKEN_TYPE.class);
+	private final int[][] table;
+
+	/**
+	 * Reads a grammar and builds its table.
+	 * @param grammar The grammar, one rule per line
+	 * @throws IOException thrown if the grammar cannot be read.
+	 * @throws IllegalArgumentException thrown if the grammar has an unknown
+	 * rule or is not LL(1).
+	 */
+	public LLTableGenerator(Reader grammar) throws IOException{
+		read(new BufferedReader(grammar));
+		computeFirst();
+		computeFollow();
+		table = buildTable();
+	}
+
+	private void read(BufferedReader reader) throws IOException{
+		String line;
+		while((line = reader.readLine()) != null){
+			String [] tokens = line.trim().split("\\s+");
+			if(tokens[0].isEmpty()){
+				continue;
+			}
+			RULE_NUMER ruleNum = LLParserHelper.getRuleNumber(tokens[0]);
+			if(ruleNum == null || productions.containsKey(ruleNum)){
+				throw new IllegalArgumentException("Unknown or repeated rule " + tokens[0]);
+			}
+			List<TOKEN_TYPE> rule = new ArrayList<TOKEN_TYPE>();
+			for(int i=1; i<tokens.length; i++){
+				rule.add(LLParserHelper.getTokenType(tokens[i]));
+			}
+			heads.put(ruleNum, LLParserHelper.getTokenType(tokens[0]));
+			productions.put(ruleNum, rule);
+			nonTerminals.add(heads.get(ruleNum));
+		}
+		if(productions.size() != RULE_NUMER.values().length){
+			throw new IllegalArgumentException("The grammar has " + productions.size() + " rules, the parser knows "
+					+ RULE_NUMER.values().length);
+		}
+	}
+
+	private void computeFirst(){
+		for(TOKEN_TYPE symbol : TOKEN_TYPE.values()){
+			Set<TOKEN_TYPE> set = EnumSet.noneOf(TOKEN_TYPE.class);
+			if(!nonTerminals.contains(symbol) && symbol != TOKEN_TYPE.EMPTY){
+				set.add(symbol);
+			}
+			first.put(symbol, set);
+		}
+		boolean changed = true;
+		while(changed){
+			changed = false;
+			for(RULE_NUMER rule : productions.keySet()){
+				TOKEN_TYPE head = heads.get(rule);
+				changed |= first.get(head).addAll(firstOf(productions.get(rule), 0));
+				if(derivesEmpty(productions.get(rule), 0) && nullable.add(head)){
+					changed = true;
+				}
+			}
+		}
+	}
+
+	private void computeFollow(){
+		for(TOKEN_TYPE symbol : nonTerminals){
+			follow.put(symbol, EnumSet.noneOf(TOKEN_TYPE.class));
+		}
+		boolean changed = true;
+		while(changed){
+			changed = false;
+			for(RULE_NUMER rule : productions.keySet()){
+				List<TOKEN_TYPE> symbols = productions.get(rule);
+				for(int i=0; i<symbols.size(); i++){
+					if(!nonTerminals.contains(symbols.get(i))){
+						continue;
+					}
+					Set<TOKEN_TYPE> set = follow.get(symbols.get(i));
+					changed |= set.addAll(firstOf(symbols, i + 1));
+					if(derivesEmpty(symbols, i + 1)){
+						changed |= set.addAll(follow.get(heads.get(rule)));
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * The FIRST set of the symbols from the given index on.
+	 */
+	private Set<TOKEN_TYPE> firstOf(List<TOKEN_TYPE> symbols, int from){
+		Set<TOKEN_TYPE> set = EnumSet.noneOf(TOKEN_TYPE.class);
+		for(int i=from; i<symbols.size(); i++){
+			set.addAll(first.get(symbols.get(i)));
+			if(!derivesEmpty(symbols.get(i))){
+				break;
+			}
+		}
+		return set;
+	}
+
+	private boolean derivesEmpty(List<TOKEN_TYPE> symbols, int from){
+		for(int i=from; i<symbols.size(); i++){
+			if(!derivesEmpty(symbols.get(i))){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean derivesEmpty(TOKEN_TYPE symbol){
+		return symbol == TOKEN_TYPE.EMPTY || nullable.contains(symbol);
+	}
+
+	private int[][] buildTable(){
+		int[][] newTable = new int[TOKEN_TYPE.values().length][];
+		for(TOKEN_TYPE symbol : nonTerminals){
+			newTable[symbol.ordinal()] = new int[TOKEN_TYPE.values().length];
+			Arrays.fill(newTable[symbol.ordinal()], -1);
+		}
+		for(RULE_NUMER rule : productions.keySet()){
+			TOKEN_TYPE head = heads.get(rule);
+			Set<TOKEN_TYPE> lookAheads = firstOf(productions.get(rule), 0);
+			if(derivesEmpty(productions.get(rule), 0)){
+				lookAheads.addAll(follow.get(head));
+			}
+			for(TOKEN_TYPE lookAhead : lookAheads){
+				int[] row = newTable[head.ordinal()];
+				if(row[lookAhead.ordinal()] != -1 && row[lookAhead.ordinal()] != rule.ordinal()){
+					throw new IllegalArgumentException("Not LL(1): " + head + " on " + lookAhead + " could use "
+							+ RULE_NUMER.values()[row[lookAhead.ordinal()]] + " or " + rule);
+				}
+				row[lookAhead.ordinal()] = rule.ordinal();
+			}
+		}
+		return newTable;
+	}
+
+	/**
+	 * The source code of LLTable.
+	 * @param source The name of the grammar file, mentioned in the header
+	 */
+	public String generate(String source){
+		TOKEN_TYPE[] symbols = TOKEN_TYPE.values();
+		StringBuilder sb = new StringBuilder();
+		sb.append("// Generated by parser.LLTableGenerator from " + source + ". Do not edit.\n");
+		sb.append("package parser;\n\n");
+		sb.append("/**\n");
+		sb.append(" * The LL(1) parse table and the productions of the MiniRE grammar.\n");
+		sb.append(" */\n");
+		sb.append("final class LLTable {\n");
+		sb.append("\t/** The number of LLParser.TOKEN_TYPE values the table was generated for. */\n");
+		sb.append("\tstatic final int TOKEN_TYPE_COUNT = " + symbols.length + ";\n");
+		sb.append("\t/** The number of LLParser.RULE_NUMER values the table was generated for. */\n");
+		sb.append("\tstatic final int RULE_COUNT = " + RULE_NUMER.values().length + ";\n\n");
+		sb.append("\t/**\n");
+		sb.append("\t * The RULE_NUMER ordinal to expand a nonterminal with, by the TOKEN_TYPE\n");
+		sb.append("\t * ordinals of the nonterminal and the lookahead, or -1 for a syntax error.\n");
+		sb.append("\t * Rows of terminals are null.\n");
+		sb.append("\t */\n");
+		sb.append("\tstatic final int[][] TABLE = {\n");
+		for(TOKEN_TYPE symbol : symbols){
+			int[] row = table[symbol.ordinal()];
+			sb.append("\t\t/* " + symbol + " */ ");
+			if(row == null){
+				sb.append("null,\n");
+				continue;
+			}
+			sb.append("{");
+			for(int i=0; i<row.length; i++){
+				sb.append(i == 0 ? "" : ", ").append(row[i]);
+			}
+			sb.append("},\n");
+		}
+		sb.append("\t};\n\n");
+		sb.append("\t/**\n");
+		sb.append("\t * The right hand side of each rule as TOKEN_TYPE ordinals, by RULE_NUMER\n");
+		sb.append("\t * ordinal.\n");
+		sb.append("\t */\n");
+		sb.append("\tstatic final int[][] PRODUCTIONS = {\n");
+		for(RULE_NUMER rule : productions.keySet()){
+			sb.append("\t\t/* " + rule + " */ {");
+			List<TOKEN_TYPE> rhs = productions.get(rule);
+			for(int i=0; i<rhs.size(); i++){
+				sb.append(i == 0 ? "" : ", ").append(rhs.get(i).ordinal());
+			}
+			sb.append("},\n");
+		}
+		sb.append("\t};\n\n");
+		sb.append("\tprivate LLTable(){\n");
+		sb.append("\t}\n");
+		sb.append("}\n");
+		return sb.toString();
+	}
+
+	public static void main(String [] args) throws IOException{
+		File grammarFile = new File(args.length > 0 ? args[0] : "grammar_rule.txt");
+		File sourceDir = new File(args.length > 1 ? args[1] : "src");
+
+		Reader grammar = new FileReader(grammarFile);
+		LLTableGenerator generator;
+		try{
+			generator = new LLTableGenerator(grammar);
+		}finally{
+			grammar.close();
+		}
+
+		File output = new File(new File(sourceDir, "parser"), "LLTable.java");
+		Writer writer = new FileWriter(output);
+		try{
+			writer.write(generator.generate(grammarFile.getName()));
+		}finally{
+			writer.close();
+		}
+		System.out.println("Wrote " + output.getPath());
+	}
+}
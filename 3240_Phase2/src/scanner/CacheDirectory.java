@@ -0,0 +1,74 @@
+package scanner;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.util.Set;
+
+/**
+ * The directories the lexer and regex caches keep their DFAs in.
+ *
+ * Cache files are trusted once they are found, so a directory is only used
+ * if no other user could have put files in it. The default directories are
+ * named after the user and created accessible to their owner only. Where
+ * the file system has POSIX permissions, a directory owned by someone else
+ * or writable by its group or others is not used at all.
+ */
+final class CacheDirectory {
+
+    private CacheDirectory() {
+    }
+
+    /**
+     * The default directory of a cache, in the temporary directory.
+     * @param name The name of the cache
+     * @return The directory, which need not exist yet.
+     */
+    static File defaultDirectory(String name) {
+        String user = System.getProperty("user.name", "").replaceAll("[^A-Za-z0-9._-]", "_");
+        return new File(System.getProperty("java.io.tmpdir"), name + "-" + user);
+    }
+
+    /**
+     * Creates a cache directory if it does not exist yet.
+     * @param directory The directory
+     * @return Whether the directory can be used: it exists and only the
+     * current user can write to it.
+     */
+    static boolean prepare(File directory) {
+        Path path = directory.toPath();
+        boolean posix = FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+        try {
+            if (!directory.isDirectory()) {
+                if (posix) {
+                    Files.createDirectories(path, PosixFilePermissions.asFileAttribute(
+                            PosixFilePermissions.fromString("rwx------")));
+                } else {
+                    Files.createDirectories(path);
+                }
+            }
+            return !posix || isPrivate(path);
+        } catch (IOException ex) {
+            return false;
+        } catch (UnsupportedOperationException ex) {
+            return false;
+        }
+    }
+
+    private static boolean isPrivate(Path path) throws IOException {
+        PosixFileAttributes attributes = Files.readAttributes(path, PosixFileAttributes.class);
+        UserPrincipal user = FileSystems.getDefault().getUserPrincipalLookupService()
+                .lookupPrincipalByName(System.getProperty("user.name"));
+        Set<PosixFilePermission> permissions = attributes.permissions();
+        return attributes.isDirectory()
+                && attributes.owner().equals(user)
+                && !permissions.contains(PosixFilePermission.GROUP_WRITE)
+                && !permissions.contains(PosixFilePermission.OTHERS_WRITE);
+    }
+}
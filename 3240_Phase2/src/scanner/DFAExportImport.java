@@ -1,25 +1,36 @@
 package scanner;
 import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.Reader;
 import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
 import java.util.Arrays;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
-import java.util.List;
 import java.util.Scanner;
 import java.util.Set;
 import java.util.Stack;
 
 import scanner.automata.DFA;
 import scanner.automata.MapBasedDFA;
+import scanner.automata.MappedDFA;
 import scanner.automata.State;
+import scanner.automata.StateFactory;
 import scanner.automata.Token;
 
 /**
- * Contains functions to manage exporting and importing of DFAs
+ * Contains functions to manage exporting and importing of DFAs.
+ *
+ * DFAs can be saved as a tab separated text table, which is meant for
+ * reading and debugging, or in the binary format of {@link MappedDFA}, which
+ * is memory mapped when loaded and needs no parsing.
  */
 public class DFAExportImport {
     
@@ -40,7 +51,13 @@ public class DFAExportImport {
         }
     }
 
-    private static void writeDFA(DFA dfa, Writer out) throws IOException {
+    /**
+     * Writes a DFA in the export format. The writer is flushed but not closed.
+     * @param dfa DFA to be saved.
+     * @param out Destination.
+     * @throws IOException thrown if the DFA cannot be written.
+     */
+    public static void writeDFA(DFA dfa, Writer out) throws IOException {
         Character[] alphabet = dfa.alphabet().toArray(new Character[0]);
         State[] states = dfa.allStates().toArray(new State[0]);
 
@@ -92,102 +109,177 @@ public class DFAExportImport {
     public static DFA importDFA(File file) {
         try {
             Scanner scan = new Scanner(file);
-            HashMap<String, State> stringToStateMap = new HashMap<String, State>();
-            HashMap<String, String[]> statesTransitions = new HashMap<String, String[]>();
-            List<String> statesToBeParsed = new LinkedList<String>();
-
-            State.resetCount();
-            String startStateString = scan.nextLine();
-            if (!startStateString.startsWith("Start:")) {
+            DFA dfa = readDFA(scan);
+            scan.close();
+            if (dfa == null) {
                 System.out.println("Error: Invalid DFA format");
                 System.exit(1);
             }
-            startStateString = startStateString.split(" ")[1];
-
-            String finalStatesUnparsed = scan.nextLine();
-            int tabIndex = finalStatesUnparsed.indexOf(" ");
-            String[] finalStates = finalStatesUnparsed.substring(tabIndex + 1).split("\t");
-            HashSet<String> finalStateSet = new HashSet<String>();
-            finalStateSet.addAll(Arrays.asList(finalStates));
-
-            String alphabetUnparsed = scan.nextLine();
-            tabIndex = alphabetUnparsed.indexOf("\t");
-            String[] alphabet = alphabetUnparsed.substring(tabIndex + 1).split("\t");
-
-            int stateCount = 0;
-            String currLine = scan.nextLine();
-            while (!currLine.equalsIgnoreCase("--Tokens")) {
-                String stateTransitions = currLine;
-                tabIndex = stateTransitions.indexOf("\t");
-                String state = stateTransitions.substring(0, tabIndex);
-                String transitions = stateTransitions.substring(tabIndex + 1);
-                statesTransitions.put(state, transitions.split("\t"));
-                statesToBeParsed.add(state);
-                stateCount++;
-                currLine = scan.nextLine();
+            return dfa;
+        } catch (IOException ex) {
+            System.out.println("Error writing DFA to: " + file.toString());
+            return null;
+        }
+    }
+
+    /**
+     * Reads a DFA in the export format. Unlike importDFA, a malformed DFA is
+     * reported as an exception. The reader is not closed.
+     * @param in Origination.
+     * @return Loaded DFA.
+     * @throws IOException thrown if the DFA cannot be read or is malformed.
+     */
+    public static DFA readDFA(Reader in) throws IOException {
+        DFA dfa;
+        try {
+            dfa = readDFA(new Scanner(in));
+        } catch (RuntimeException ex) {
+            throw new IOException("Invalid DFA format", ex);
+        }
+        if (dfa == null) {
+            throw new IOException("Invalid DFA format");
+        }
+        return dfa;
+    }
+
+    /**
+     * Reads a DFA, or returns null if the input does not start like one.
+     */
+    private static DFA readDFA(Scanner scan) {
+        HashMap<String, State> stringToStateMap = new HashMap<String, State>();
+        HashMap<String, String[]> statesTransitions = new HashMap<String, String[]>();
+
+        StateFactory stateFactory = new StateFactory();
+        String startStateString = scan.nextLine();
+        if (!startStateString.startsWith("Start:")) {
+            return null;
+        }
+        startStateString = startStateString.split(" ")[1];
+
+        String finalStatesUnparsed = scan.nextLine();
+        int tabIndex = finalStatesUnparsed.indexOf(" ");
+        String[] finalStates = finalStatesUnparsed.substring(tabIndex + 1).split("\t");
+        HashSet<String> finalStateSet = new HashSet<String>();
+        finalStateSet.addAll(Arrays.asList(finalStates));
+
+        String alphabetUnparsed = scan.nextLine();
+        tabIndex = alphabetUnparsed.indexOf("\t");
+        String[] alphabet = alphabetUnparsed.substring(tabIndex + 1).split("\t");
+
+        int stateCount = 0;
+        String currLine = scan.nextLine();
+        while (!currLine.equalsIgnoreCase("--Tokens")) {
+            String stateTransitions = currLine;
+            tabIndex = stateTransitions.indexOf("\t");
+            String state = stateTransitions.substring(0, tabIndex);
+            String transitions = stateTransitions.substring(tabIndex + 1);
+            statesTransitions.put(state, transitions.split("\t"));
+            stateCount++;
+            currLine = scan.nextLine();
+        }
+
+        HashMap<String, String[]> tokenMap = new HashMap<String, String[]>();
+        while (scan.hasNext()) {
+            String stateTokens = scan.nextLine();
+            tabIndex = stateTokens.indexOf("\t");
+            if(tabIndex == -1) {
+                tokenMap.put(stateTokens, new String[0]);
+                continue;
             }
+            String state = stateTokens.substring(0, tabIndex);
+            String tokenString = stateTokens.substring(tabIndex + 1);
+            String[] tokens = tokenString.split("\t");
+            tokenMap.put(state, tokens);
+        }
 
-            HashMap<String, String[]> tokenMap = new HashMap<String, String[]>();
-            while (scan.hasNext()) {
-                String stateTokens = scan.nextLine();
-                tabIndex = stateTokens.indexOf("\t");
-                if(tabIndex == -1) {
-                    tokenMap.put(stateTokens, new String[0]);
-                    continue;
-                }
-                String state = stateTokens.substring(0, tabIndex);
-                String tokenString = stateTokens.substring(tabIndex + 1);
-                String[] tokens = tokenString.split("\t");
-                tokenMap.put(state, tokens);
+        State startState = stateFactory.newState();
+        startState.setFinal(finalStateSet.contains(startStateString));
+        stringToStateMap.put(startStateString, startState);
+        MapBasedDFA returnDFA = new MapBasedDFA(startState);
+
+        addReachableStates(startStateString, stringToStateMap, statesTransitions, alphabet, finalStateSet, returnDFA, stateFactory);
+
+        for(String currStateString: tokenMap.keySet()) {
+            State currState = stringToStateMap.get(currStateString);
+            Stack<Token> tokens = new Stack<Token>();
+            for(int i = tokenMap.get(currStateString).length-1; i >= 0; i--) {
+                String tokenString = tokenMap.get(currStateString)[i];
+                tokenString = tokenString.substring(1, tokenString.length()-1);
+                if(tokenString.charAt(0) == '/') {
+                    tokens.push(new Token(tokenString.substring(1), false));
+                } else {
+                    tokens.push(new Token(tokenString, true));
+                }                
             }
+            currState.setTokens(tokens);
+        }
+
+        return returnDFA;
+    }
 
-            State startState = new State();
-            stringToStateMap.put(startStateString, startState);
-            MapBasedDFA returnDFA = new MapBasedDFA(startState);
-
-            searchAndAddStates(startStateString, statesToBeParsed, stringToStateMap, statesTransitions, alphabet, finalStateSet, returnDFA);
-
-            for(String currStateString: tokenMap.keySet()) {
-                State currState = stringToStateMap.get(currStateString);
-                Stack<Token> tokens = new Stack<Token>();
-                for(int i = tokenMap.get(currStateString).length-1; i >= 0; i--) {
-                    String tokenString = tokenMap.get(currStateString)[i];
-                    tokenString = tokenString.substring(1, tokenString.length()-1);
-                    if(tokenString.charAt(0) == '/') {
-                        tokens.push(new Token(tokenString.substring(1), false));
-                    } else {
-                        tokens.push(new Token(tokenString, true));
-                    }                
+    /**
+     * Adds the transitions of every state reachable from the start state,
+     * visiting each state once.
+     */
+    private static void addReachableStates(String startStateString, HashMap<String, State> stringToStateMap, HashMap<String, String[]> statesTransitions, String[] alphabet, Set<String> finalStates, MapBasedDFA dfa, StateFactory stateFactory) {
+        Deque<String> fringe = new ArrayDeque<String>();
+        Set<String> visited = new HashSet<String>();
+        fringe.add(startStateString);
+        visited.add(startStateString);
+        while (!fringe.isEmpty()) {
+            String currStateString = fringe.poll();
+            State currState = stringToStateMap.get(currStateString);
+            String[] transitions = statesTransitions.get(currStateString);
+            for (int i = 0; i < transitions.length; i++) {
+                String nextStateString = transitions[i];
+                Character transitionLetter = alphabet[i].charAt(0);
+                State nextState = stringToStateMap.get(nextStateString);
+                if (nextState == null) {
+                    nextState = stateFactory.newState();
+                    nextState.setFinal(finalStates.contains(nextStateString));
+                    stringToStateMap.put(nextStateString, nextState);
+                }
+                dfa.addTransition(currState, transitionLetter, nextState);
+                if (statesTransitions.containsKey(nextStateString) && visited.add(nextStateString)) {
+                    fringe.add(nextStateString);
                 }
-                currState.setTokens(tokens);
             }
-
-            return returnDFA;
-        } catch (IOException ex) {
-            System.out.println("Error writing DFA to: " + file.toString());
-            return null;
         }
     }
 
-    private static void searchAndAddStates(String currStateString, List<String> statesToBeParsed, HashMap<String, State> stringToStateMap, HashMap<String, String[]> statesTransitions, String[] alphabet, Set<String> finalStates, MapBasedDFA dfa) {
-        if (!statesToBeParsed.contains(currStateString)) return;
-
-        State currState = stringToStateMap.get(currStateString);
-        statesToBeParsed.remove(currStateString);
-        for (int i = 0; i < statesTransitions.get(currStateString).length; i++) {
-            String nextStateString = statesTransitions.get(currStateString)[i];
-            Character transitionLetter = alphabet[i].charAt(0);
-            State nextState;
-            if (stringToStateMap.containsKey(nextStateString)) {
-                nextState = stringToStateMap.get(nextStateString);
-            } else {
-                nextState = new State();
-                stringToStateMap.put(nextStateString, nextState);
-            }
-            if (finalStates.contains(nextStateString)) nextState.setFinal(true);
-            dfa.addTransition(currState, transitionLetter, nextState);
+    /**
+     * Performs the export of a DFA to a file in the binary format of
+     * MappedDFA. The text format of exportDFA is easier to read, this one is
+     * much faster to load.
+     * @param dfa DFA to be saved.
+     * @param file Destination file.
+     * @throws IOException thrown if the file cannot be written.
+     */
+    public static void exportBinaryDFA(DFA dfa, File file) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            MappedDFA.write(dfa, out);
+        } finally {
+            out.close();
+        }
+    }
 
-            searchAndAddStates(nextStateString, statesToBeParsed, stringToStateMap, statesTransitions, alphabet, finalStates, dfa);
+    /**
+     * Maps a DFA in the binary format into memory. The DFA is read from the
+     * file as it runs instead of being parsed up front.
+     * @param file Origination file.
+     * @return Loaded DFA.
+     * @throws IOException thrown if the file cannot be read or is not a binary
+     * DFA.
+     */
+    public static MappedDFA importBinaryDFA(File file) throws IOException {
+        FileChannel channel = new RandomAccessFile(file, "r").getChannel();
+        try {
+            return new MappedDFA(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (IllegalArgumentException ex) {
+            throw new IOException(ex.getMessage() + ": " + file, ex);
+        } finally {
+            channel.close();
         }
     }
 }
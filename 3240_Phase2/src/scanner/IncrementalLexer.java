@@ -0,0 +1,314 @@
+package scanner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import scanner.automata.DFA;
+import scanner.automata.IndexedDFA;
+import scanner.automata.TableBasedDFA;
+
+/**
+ * Keeps the tokens of a MiniRE script up to date while it is being edited.
+ *
+ * The lexer holds its own copy of the text, changed through
+ * {@link #insert(int, String)} and {@link #remove(int, int)} in step with the
+ * editor's document. Tokens are found the same way as by
+ * {@link ScriptTokenizer}, but after an edit only the part of the text the
+ * edit can affect is lexed again:
+ * <ul>
+ * <li>Lexing restarts at the end of the last token whose lookahead (every
+ * character the DFA read while finding it and skipping the characters before
+ * it) stayed in front of the edit.</li>
+ * <li>It stops as soon as it reaches, behind the edit, the start of a token of
+ * the previous stream. From there on the text is unchanged and lexing would
+ * go exactly as before, so the remaining tokens are only shifted.</li>
+ * </ul>
+ * Typing inside one token of a long script therefore lexes a token or two.
+ *
+ * A lexer is not thread safe; it is meant to be driven from the thread that
+ * edits the document.
+ */
+public class IncrementalLexer {
+    private final IndexedDFA dfa;
+    private final StringBuilder text = new StringBuilder();
+
+    // The tokens in order. extents[i] is one past the last character read by
+    // the DFA for any token up to i, so it never decreases.
+    private int size;
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private int[] extents = new int[16];
+    private int[] lines = new int[16];
+    private TokenKind[] kinds = new TokenKind[16];
+    private String[] texts = new String[16];
+
+    private int lastRelexStart;
+    private int lastRelexEnd;
+
+    // Set by longestMatch: one past the last character it read
+    private int examined;
+
+    /**
+     * Creates a lexer for an empty text.
+     * @param dfa The DFA for the lexical specification
+     */
+    public IncrementalLexer(DFA dfa) {
+        this.dfa = dfa instanceof IndexedDFA ? (IndexedDFA) dfa : new TableBasedDFA(dfa);
+    }
+
+    /**
+     * Replaces the whole text.
+     * @param newText The new text
+     */
+    public void setText(CharSequence newText) {
+        int removed = text.length();
+        text.setLength(0);
+        text.append(newText);
+        edited(0, removed, newText.length());
+    }
+
+    /**
+     * Inserts text.
+     * @param offset Where to insert
+     * @param inserted The text to insert
+     */
+    public void insert(int offset, String inserted) {
+        if (inserted.isEmpty()) return;
+        text.insert(offset, inserted);
+        edited(offset, 0, inserted.length());
+    }
+
+    /**
+     * Removes text.
+     * @param offset The start of the text to remove
+     * @param length The number of characters to remove
+     */
+    public void remove(int offset, int length) {
+        if (length == 0) return;
+        text.delete(offset, offset + length);
+        edited(offset, length, 0);
+    }
+
+    /**
+     * The current text.
+     */
+    public String getText() {
+        return text.toString();
+    }
+
+    public int tokenCount() {
+        return size;
+    }
+
+    /**
+     * The token at the given index.
+     */
+    public ScriptToken token(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Token " + index + " of " + size);
+        }
+        int lineStart = starts[index];
+        while (lineStart > 0 && text.charAt(lineStart - 1) != '\n' && text.charAt(lineStart - 1) != '\r') {
+            lineStart--;
+        }
+        return new ScriptToken(kinds[index], texts[index], lines[index], starts[index] - lineStart + 1, starts[index]);
+    }
+
+    /**
+     * All tokens, in order.
+     */
+    public List<ScriptToken> getTokens() {
+        List<ScriptToken> tokens = new ArrayList<ScriptToken>(size);
+        for (int i = 0; i < size; i++) {
+            tokens.add(token(i));
+        }
+        return tokens;
+    }
+
+    /**
+     * The tokens as a scan result, as {@link ScriptScanner} would return them
+     * for the current text.
+     */
+    public ScriptScanResult toScanResult() {
+        ScriptScanResult result = new ScriptScanResult();
+        for (int i = 0; i < size; i++) {
+            result.add(token(i));
+        }
+        return result;
+    }
+
+    /**
+     * The start of the text lexed again for the last edit.
+     */
+    public int getLastRelexStart() {
+        return lastRelexStart;
+    }
+
+    /**
+     * The end (exclusive) of the text lexed again for the last edit.
+     */
+    public int getLastRelexEnd() {
+        return lastRelexEnd;
+    }
+
+    /**
+     * Brings the tokens up to date after text at offset was replaced. The
+     * text has already been changed.
+     * @param offset Where the edit starts
+     * @param removed The number of characters removed
+     * @param inserted The number of characters inserted
+     */
+    private void edited(int offset, int removed, int inserted) {
+        int delta = inserted - removed;
+        int editEnd = offset + inserted;
+
+        // Tokens [0, keep) read nothing at or after the offset
+        int keep = firstAbove(extents, 0, size, offset);
+        // Old tokens from tail on start behind the edit
+        int tail = firstAtLeast(starts, keep, size, offset + removed);
+
+        int position = keep == 0 ? 0 : ends[keep - 1];
+        int line = keep == 0 ? 1 : lines[keep - 1];
+        int lineEnd = lineEnd(position);
+        int extent = keep == 0 ? 0 : extents[keep - 1];
+        lastRelexStart = position;
+
+        List<int[]> added = new ArrayList<int[]>();
+        List<String> addedTexts = new ArrayList<String>();
+        boolean synced = false;
+        while (true) {
+            if (position >= lineEnd) {
+                if (lineEnd >= text.length()) {
+                    break;
+                }
+                position = lineEnd + 1;
+                if (text.charAt(lineEnd) == '\r' && position < text.length() && text.charAt(position) == '\n') {
+                    position++;
+                }
+                line++;
+                lineEnd = lineEnd(position);
+                continue;
+            }
+            if (position >= editEnd) {
+                while (tail < size && starts[tail] + delta < position) {
+                    tail++;
+                }
+                if (tail < size && starts[tail] + delta == position) {
+                    synced = true;
+                    break;
+                }
+            }
+            int end = longestMatch(position, lineEnd);
+            extent = Math.max(extent, examined);
+            if (end <= position) {
+                position++;
+                continue;
+            }
+            added.add(new int[] {position, end, extent, line});
+            addedTexts.add(text.substring(position, end));
+            position = end;
+        }
+        lastRelexEnd = position;
+        if (!synced) {
+            tail = size;
+        }
+
+        int lineDelta = tail < size ? line - lines[tail] : 0;
+        int tailLength = size - tail;
+        int newSize = keep + added.size() + tailLength;
+        ensureCapacity(newSize);
+        int to = keep + added.size();
+        System.arraycopy(starts, tail, starts, to, tailLength);
+        System.arraycopy(ends, tail, ends, to, tailLength);
+        System.arraycopy(extents, tail, extents, to, tailLength);
+        System.arraycopy(lines, tail, lines, to, tailLength);
+        System.arraycopy(kinds, tail, kinds, to, tailLength);
+        System.arraycopy(texts, tail, texts, to, tailLength);
+        for (int i = 0; i < added.size(); i++) {
+            int[] token = added.get(i);
+            starts[keep + i] = token[0];
+            ends[keep + i] = token[1];
+            extents[keep + i] = token[2];
+            lines[keep + i] = token[3];
+            texts[keep + i] = addedTexts.get(i);
+            kinds[keep + i] = TokenKind.of(texts[keep + i]);
+        }
+        for (int i = to; i < newSize; i++) {
+            starts[i] += delta;
+            ends[i] += delta;
+            extents[i] = Math.max(extents[i] + delta, extent);
+            lines[i] += lineDelta;
+        }
+        Arrays.fill(texts, newSize, Math.max(newSize, size), null);
+        Arrays.fill(kinds, newSize, Math.max(newSize, size), null);
+        size = newSize;
+    }
+
+    /**
+     * Finds the end of the longest token starting at the given position, and
+     * sets examined to one past the last character read. Running into the end
+     * of the line counts as reading the line break.
+     * @return The end (exclusive) of the token, or -1 if none starts there.
+     */
+    private int longestMatch(int startIndex, int lineEnd) {
+        int state = dfa.startIndex();
+        int lastAccept = -1;
+        char first = text.charAt(startIndex);
+        for (int i = startIndex; i < lineEnd; i++) {
+            state = ScriptTokenizer.next(dfa, state, first, text.charAt(i));
+            if (state < 0 || dfa.isDead(state)) {
+                examined = i + 1;
+                return lastAccept;
+            }
+            if (dfa.isFinal(state)) {
+                lastAccept = i + 1;
+            }
+        }
+        examined = lineEnd + 1;
+        return lastAccept;
+    }
+
+    private int lineEnd(int position) {
+        int end = position;
+        while (end < text.length() && text.charAt(end) != '\n' && text.charAt(end) != '\r') {
+            end++;
+        }
+        return end;
+    }
+
+    /**
+     * The first index in [from, to) whose value is above the key, for values
+     * that never decrease.
+     */
+    private static int firstAbove(int[] values, int from, int to, int key) {
+        while (from < to) {
+            int middle = (from + to) >>> 1;
+            if (values[middle] <= key) {
+                from = middle + 1;
+            } else {
+                to = middle;
+            }
+        }
+        return from;
+    }
+
+    /**
+     * The first index in [from, to) whose value is at least the key, for
+     * values that never decrease.
+     */
+    private static int firstAtLeast(int[] values, int from, int to, int key) {
+        return firstAbove(values, from, to, key - 1);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= starts.length) return;
+        int newCapacity = Math.max(capacity, starts.length * 2);
+        starts = Arrays.copyOf(starts, newCapacity);
+        ends = Arrays.copyOf(ends, newCapacity);
+        extents = Arrays.copyOf(extents, newCapacity);
+        lines = Arrays.copyOf(lines, newCapacity);
+        kinds = Arrays.copyOf(kinds, newCapacity);
+        texts = Arrays.copyOf(texts, newCapacity);
+    }
+}
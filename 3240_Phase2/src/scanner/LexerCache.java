@@ -0,0 +1,177 @@
+package scanner;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ConcurrentHashMap;
+
+import scanner.automata.DFA;
+import scanner.automata.IndexedDFA;
+import scanner.automata.MappedDFA;
+import scanner.automata.NFA;
+import scanner.automata.TableBasedDFA;
+import scanner.conversion.NFAtoDFA;
+import scanner.exceptions.SyntaxErrorException;
+import scanner.generateNFA.FinalNFA;
+import scanner.minimization.HopcroftMinimizer;
+
+/**
+ * Caches the lexer DFAs built from lexical specification files.
+ *
+ * A lexer is keyed by the SHA-256 hash of the content of its specification,
+ * so an edited specification is always rebuilt while an unchanged one, even
+ * under another name, is not. Lexers are kept in memory for the life of the
+ * process and written to a cache directory in the binary DFA format, so that
+ * a later process only has to memory map the file. The directory defaults
+ * to minire-lexers-<user> in the temporary directory and can be changed with
+ * the minire.lexerCache system property or {@link #setDirectory(File)}. A
+ * directory other users can write to is not used, see {@link CacheDirectory}.
+ *
+ * Lexers are built with the parallel NFA to DFA conversion, on as many
+ * threads as there are processors unless the minire.dfaParallelism system
+ * property says otherwise; the DFA is the same for any number of threads.
+ *
+ * A cache file that cannot be read is ignored and replaced. Files are written
+ * to a temporary name first and then moved into place, so processes sharing
+ * the directory never see half-written lexers.
+ */
+public class LexerCache {
+    // Part of the file names, to be bumped whenever the construction of the
+    // lexer or the file format changes.
+    private static final String VERSION = "3";
+    private static final int PARALLELISM = Integer.getInteger("minire.dfaParallelism",
+            Runtime.getRuntime().availableProcessors());
+
+    private static final ConcurrentHashMap<String, IndexedDFA> lexers = new ConcurrentHashMap<String, IndexedDFA>();
+    private static volatile File directory = new File(System.getProperty("minire.lexerCache",
+            CacheDirectory.defaultDirectory("minire-lexers").getPath()));
+
+    /**
+     * Returns the lexer for a specification file, building it only if neither
+     * the memory nor the disk cache has it.
+     * @param specFile The name of the lexical specification file
+     * @return The minimized lexer DFA.
+     * @throws FileNotFoundException thrown if the specification does not exist.
+     * @throws IOException thrown if the specification cannot be read.
+     * @throws SyntaxErrorException thrown if the specification is malformed.
+     */
+    public static IndexedDFA lexerFor(String specFile) throws FileNotFoundException, IOException, SyntaxErrorException {
+        String key = hashOf(new File(specFile));
+        IndexedDFA lexer = lexers.get(key);
+        if (lexer != null) {
+            return lexer;
+        }
+        synchronized (LexerCache.class) {
+            lexer = lexers.get(key);
+            if (lexer == null) {
+                lexer = load(key);
+            }
+            if (lexer == null) {
+                lexer = build(specFile);
+                store(key, lexer);
+            }
+            lexers.put(key, lexer);
+            return lexer;
+        }
+    }
+
+    /**
+     * Sets the directory lexers are saved to and loaded from.
+     * @param cacheDirectory The directory, or null to keep lexers in memory only
+     */
+    public static void setDirectory(File cacheDirectory) {
+        directory = cacheDirectory;
+    }
+
+    /**
+     * Forgets every lexer held in memory. The disk cache is left alone.
+     */
+    public static void clear() {
+        lexers.clear();
+    }
+
+    private static TableBasedDFA build(String specFile) throws FileNotFoundException, IOException, SyntaxErrorException {
+        NFA nfa = new FinalNFA().generate(specFile);
+        return new TableBasedDFA(HopcroftMinimizer.minimize(NFAtoDFA.dfaFromNFA(nfa, PARALLELISM)));
+    }
+
+    private static File cacheFile(String key) {
+        File cacheDirectory = directory;
+        return cacheDirectory == null ? null : new File(cacheDirectory, "lexer-v" + VERSION + "-" + key + ".bin");
+    }
+
+    private static IndexedDFA load(String key) {
+        File file = cacheFile(key);
+        if (file == null || !file.isFile() || !CacheDirectory.prepare(file.getParentFile())) {
+            return null;
+        }
+        try {
+            return DFAExportImport.importBinaryDFA(file);
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+
+    private static void store(String key, DFA lexer) {
+        File file = cacheFile(key);
+        if (file == null) {
+            return;
+        }
+        File temp = null;
+        OutputStream out = null;
+        try {
+            if (!CacheDirectory.prepare(file.getParentFile())) {
+                return;
+            }
+            temp = File.createTempFile("lexer", ".tmp", file.getParentFile());
+            out = new FileOutputStream(temp);
+            MappedDFA.write(lexer, out);
+            out.close();
+            out = null;
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            temp = null;
+        } catch (IOException ex) {
+            // The lexer is still cached in memory, it will be rebuilt next run
+        } finally {
+            closeQuietly(out);
+            if (temp != null) {
+                temp.delete();
+            }
+        }
+    }
+
+    private static String hashOf(File specFile) throws IOException {
+        if (!specFile.exists()) {
+            throw new FileNotFoundException(specFile.getPath());
+        }
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+        byte[] hash = digest.digest(Files.readAllBytes(specFile.toPath()));
+        StringBuilder hex = new StringBuilder();
+        for (byte b : hash) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16));
+            hex.append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ex) {
+            }
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package scanner;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.regex.Pattern;
+
+import scanner.automata.IndexedDFA;
+import scanner.automata.MappedDFA;
+
+/**
+ * Caches the matchers compiled for the REGEXes of MiniRE scripts.
+ *
+ * Matchers are keyed by the regex text as the statements use it, without
+ * the quotes and spaces of the literal, so every find with the same regex
+ * shares one matcher, also across scripts. Replace and recursivereplace
+ * only need the java.util.regex pattern, which {@link #patternFor(String)}
+ * caches on its own without building a DFA. The cache holds the most
+ * recently used matchers and patterns, 256 of each unless the
+ * minire.regexCacheSize system property or {@link #setCapacity(int)} says
+ * otherwise.
+ *
+ * A regex is compiled once even if several threads ask for it at the same
+ * time: the first one compiles it while the others wait for its result. A
+ * regex that fails to compile is not cached.
+ *
+ * Like {@link LexerCache}, the DFAs of the matchers are also written to a
+ * cache directory in the binary DFA format, so a later process only has to
+ * read them back. The directory defaults to minire-regexes-<user> in the
+ * temporary directory and can be changed with the minire.regexCache system
+ * property or {@link #setDirectory(File)}. A directory other users can write
+ * to is not used, see {@link CacheDirectory}.
+ */
+public class RegexCache {
+    // Part of the file names, to be bumped whenever the construction of the
+    // DFAs or the file format changes.
+    private static final String VERSION = "2";
+    private static final int DEFAULT_CAPACITY = 256;
+
+    private static final LinkedHashMap<String, FutureTask<RegexMatcher>> matchers = new LinkedHashMap<String, FutureTask<RegexMatcher>>(16, 0.75f, true);
+    // Guarded by matchers, like capacity
+    private static final LinkedHashMap<String, Pattern> patterns = new LinkedHashMap<String, Pattern>(16, 0.75f, true);
+    private static int capacity = Integer.getInteger("minire.regexCacheSize", DEFAULT_CAPACITY);
+    private static volatile File directory = new File(System.getProperty("minire.regexCache",
+            CacheDirectory.defaultDirectory("minire-regexes").getPath()));
+
+    /**
+     * Returns the matcher for a regex, compiling it only if neither the
+     * memory nor the disk cache has it.
+     * @param regex The regex, in java.util.regex syntax
+     * @return The matcher.
+     * @throws java.util.regex.PatternSyntaxException thrown if the regex is invalid.
+     */
+    public static RegexMatcher matcherFor(final String regex) {
+        FutureTask<RegexMatcher> task;
+        synchronized (matchers) {
+            task = matchers.get(regex);
+            if (task == null) {
+                task = new FutureTask<RegexMatcher>(new Callable<RegexMatcher>() {
+                    @Override
+                    public RegexMatcher call() {
+                        return loadOrCompile(regex);
+                    }
+                });
+                matchers.put(regex, task);
+                evict(matchers);
+            }
+        }
+        // Does nothing if another thread has run or is running the task
+        task.run();
+
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return task.get();
+                } catch (InterruptedException ex) {
+                    interrupted = true;
+                } catch (ExecutionException ex) {
+                    synchronized (matchers) {
+                        if (matchers.get(regex) == task) {
+                            matchers.remove(regex);
+                        }
+                    }
+                    Throwable cause = ex.getCause();
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    } else if (cause instanceof Error) {
+                        throw (Error) cause;
+                    }
+                    throw new IllegalStateException(cause);
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Returns the java.util.regex pattern for a regex, without building the
+     * DFA a matcher would need.
+     * @param regex The regex, in java.util.regex syntax
+     * @return The pattern.
+     * @throws java.util.regex.PatternSyntaxException thrown if the regex is invalid.
+     */
+    public static Pattern patternFor(String regex) {
+        Pattern pattern;
+        synchronized (matchers) {
+            pattern = patterns.get(regex);
+        }
+        if (pattern == null) {
+            // Cheap enough that two threads may both compile it
+            pattern = Pattern.compile(regex);
+            synchronized (matchers) {
+                patterns.put(regex, pattern);
+                evict(patterns);
+            }
+        }
+        return pattern;
+    }
+
+    /**
+     * Sets how many matchers, and how many patterns, are kept in memory. The
+     * least recently used ones are dropped first.
+     * @param maxMatchers The number of matchers, at least 1
+     */
+    public static void setCapacity(int maxMatchers) {
+        if (maxMatchers < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1: " + maxMatchers);
+        }
+        synchronized (matchers) {
+            capacity = maxMatchers;
+            evict(matchers);
+            evict(patterns);
+        }
+    }
+
+    /**
+     * Sets the directory DFAs are saved to and loaded from.
+     * @param cacheDirectory The directory, or null to keep matchers in memory only
+     */
+    public static void setDirectory(File cacheDirectory) {
+        directory = cacheDirectory;
+    }
+
+    /**
+     * The number of matchers held in memory.
+     */
+    public static int size() {
+        synchronized (matchers) {
+            return matchers.size();
+        }
+    }
+
+    /**
+     * Forgets every matcher and pattern held in memory. The disk cache is
+     * left alone.
+     */
+    public static void clear() {
+        synchronized (matchers) {
+            matchers.clear();
+            patterns.clear();
+        }
+    }
+
+    private static void evict(LinkedHashMap<String, ?> cache) {
+        Iterator<?> eldest = cache.values().iterator();
+        while (cache.size() > capacity) {
+            eldest.next();
+            eldest.remove();
+        }
+    }
+
+    private static RegexMatcher loadOrCompile(String regex) {
+        Pattern pattern = Pattern.compile(regex);
+        String key = hashOf(regex);
+        IndexedDFA dfa = load(key);
+        if (dfa != null) {
+            return new RegexMatcher(regex, pattern, dfa);
+        }
+        RegexMatcher matcher = RegexMatcher.compile(regex, pattern);
+        // Lazy DFAs are built anew by every process
+        if (matcher.dfa() != null) {
+            store(key, matcher.dfa());
+        }
+        return matcher;
+    }
+
+    private static File cacheFile(String key) {
+        File cacheDirectory = directory;
+        return cacheDirectory == null ? null : new File(cacheDirectory, "regex-v" + VERSION + "-" + key + ".bin");
+    }
+
+    /**
+     * Reads a DFA into memory rather than mapping it, since regex DFAs are
+     * small and dropped again when the cache is full.
+     */
+    private static IndexedDFA load(String key) {
+        File file = cacheFile(key);
+        if (file == null || !file.isFile() || !CacheDirectory.prepare(file.getParentFile())) {
+            return null;
+        }
+        try {
+            return new MappedDFA(ByteBuffer.wrap(Files.readAllBytes(file.toPath())));
+        } catch (IOException ex) {
+            return null;
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+    }
+
+    private static void store(String key, IndexedDFA dfa) {
+        File file = cacheFile(key);
+        if (file == null) {
+            return;
+        }
+        File temp = null;
+        OutputStream out = null;
+        try {
+            if (!CacheDirectory.prepare(file.getParentFile())) {
+                return;
+            }
+            temp = File.createTempFile("regex", ".tmp", file.getParentFile());
+            out = new FileOutputStream(temp);
+            MappedDFA.write(dfa, out);
+            out.close();
+            out = null;
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            temp = null;
+        } catch (IOException ex) {
+            // The matcher is still cached in memory, it will be rebuilt next run
+        } finally {
+            closeQuietly(out);
+            if (temp != null) {
+                temp.delete();
+            }
+        }
+    }
+
+    private static String hashOf(String regex) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+        byte[] hash = digest.digest(regex.getBytes(StandardCharsets.UTF_8));
+        StringBuilder hex = new StringBuilder();
+        for (byte b : hash) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16));
+            hex.append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ex) {
+            }
+        }
+    }
+}
@@ -0,0 +1,477 @@
+package scanner;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+import scanner.automata.BitParallelNFA;
+import scanner.automata.CharToken;
+import scanner.automata.DFA;
+import scanner.automata.IndexedDFA;
+import scanner.automata.LazyDFA;
+import scanner.automata.MapBasedNFA;
+import scanner.automata.StateFactory;
+import scanner.automata.TableBasedDFA;
+import scanner.automata.Token;
+import scanner.conversion.NFAtoDFA;
+import scanner.exceptions.SyntaxErrorException;
+import scanner.generateNFA.RecursiveDescent;
+import scanner.minimization.HopcroftMinimizer;
+import scanner.tools.RegexScanner;
+
+/**
+ * Matches whole strings against the REGEX of a MiniRE find.
+ *
+ * Script regexes use java.util.regex syntax. Most of them only use what the
+ * regex syntax of the lexical specifications also has: characters, escaped
+ * characters, ., character classes, *, +, | and parentheses. Such a regex is
+ * turned into regex tokens for {@link RecursiveDescent} and compiled into a
+ * minimized {@link TableBasedDFA}, which matches a string in one pass
+ * without backtracking.
+ *
+ * The DFA only knows the printable ASCII characters, like the lexical
+ * specifications. Strings with other characters, and regexes using anything
+ * else (?, {n}, anchors, \d, lazy quantifiers, ...), are matched with a
+ * {@link Pattern} compiled once. Either way the result is that of
+ * {@link String#matches(String)}.
+ *
+ * Some regexes, such as (a|b)*a(a|b)(a|b)(a|b)(a|b), have a DFA exponential
+ * in their length. When subset construction would create more states than
+ * the minire.regexDfaStates system property allows (4096 by default), the
+ * regex is matched with a {@link LazyDFA} that keeps at most that many
+ * states instead. A lazy DFA locks its cache while it runs, so every thread
+ * gets its own, all built over the same NFA simulator.
+ *
+ * A matcher can be shared by any number of threads.
+ */
+public final class RegexMatcher {
+    private static final char FIRST_CHAR = ' ';
+    private static final char LAST_CHAR = '~';
+    private static final int ASCII = 128;
+    private static final int DEAD = -1;
+    private static final int FALLBACK = -2;
+    private static final int MAX_DFA_STATES = Integer.getInteger("minire.regexDfaStates", 4096);
+
+    private static final List<String> RE_CHARS = Arrays.asList(RecursiveDescent.RE_CHAR);
+    private static final List<String> CLS_CHARS = Arrays.asList(RecursiveDescent.CLS_CHAR);
+
+    private final String regex;
+    private final Pattern pattern;
+    private final IndexedDFA dfa;
+    // The lazy DFA of the current thread, or null if the DFA is full or absent
+    private final ThreadLocal<LazyDFA> lazyDFA;
+    // The transitions of the DFA over the ASCII characters, 128 per state,
+    // with DEAD and FALLBACK for the dead ends and the characters it lacks
+    private final int[] transitions;
+    private final boolean[] finals;
+    // The DFA start state is never final, see NFAConverter
+    private final boolean matchesEmpty;
+
+    /**
+     * Creates a matcher from its parts.
+     * @param regex The regex
+     * @param pattern The regex compiled by java.util.regex
+     * @param dfa The DFA {@link #compile(String)} built for the regex, or null
+     */
+    RegexMatcher(String regex, Pattern pattern, IndexedDFA dfa) {
+        this(regex, pattern, dfa, null);
+    }
+
+    private RegexMatcher(String regex, Pattern pattern, IndexedDFA dfa, final BitParallelNFA lazyNFA) {
+        this.regex = regex;
+        this.pattern = pattern;
+        this.dfa = dfa;
+        if (lazyNFA == null) {
+            lazyDFA = null;
+        } else {
+            lazyDFA = new ThreadLocal<LazyDFA>() {
+                @Override
+                protected LazyDFA initialValue() {
+                    return new LazyDFA(lazyNFA, MAX_DFA_STATES);
+                }
+            };
+        }
+        this.matchesEmpty = pattern.matcher("").matches();
+        if (dfa == null) {
+            transitions = null;
+            finals = null;
+        } else {
+            int states = dfa.stateCount();
+            transitions = new int[states * ASCII];
+            finals = new boolean[states];
+            for (int state = 0; state < states; state++) {
+                finals[state] = dfa.isFinal(state);
+                for (char c = 0; c < ASCII; c++) {
+                    int next = FALLBACK;
+                    if (c >= FIRST_CHAR && c <= LAST_CHAR) {
+                        next = dfa.next(state, c);
+                        // Every character the Pattern could match past here has an ASCII
+                        // stand-in, so a dead state rejects the rest of the text too
+                        if (next < 0 || dfa.isDead(next)) {
+                            next = DEAD;
+                        }
+                    }
+                    transitions[state * ASCII + c] = next;
+                }
+            }
+        }
+    }
+
+    /**
+     * Compiles a regex.
+     * @param regex The regex, in java.util.regex syntax
+     * @return The matcher.
+     * @throws java.util.regex.PatternSyntaxException thrown if the regex is invalid.
+     * @see RegexCache#matcherFor(String)
+     */
+    public static RegexMatcher compile(String regex) {
+        return compile(regex, Pattern.compile(regex));
+    }
+
+    /**
+     * Compiles a regex java.util.regex has already compiled.
+     */
+    static RegexMatcher compile(String regex, Pattern pattern) {
+        MapBasedNFA nfa = buildNFA(regex);
+        if (nfa == null) {
+            return new RegexMatcher(regex, pattern, null, null);
+        }
+        DFA dfa = NFAtoDFA.dfaFromNFA(nfa, 1, MAX_DFA_STATES);
+        if (dfa == null) {
+            return new RegexMatcher(regex, pattern, null, new BitParallelNFA(nfa));
+        }
+        return new RegexMatcher(regex, pattern, new TableBasedDFA(HopcroftMinimizer.minimize(dfa)), null);
+    }
+
+    /**
+     * Builds the NFA of a valid regex.
+     * @return The NFA, or null if the regex has to be matched with a Pattern.
+     */
+    private static MapBasedNFA buildNFA(String regex) {
+        LinkedList<Token> tokens = new Translator(regex).translate();
+        if (tokens == null) {
+            return null;
+        }
+        StateFactory states = new StateFactory();
+        MapBasedNFA nfa = new MapBasedNFA(states.newState());
+        try {
+            new RecursiveDescent(new RegexScanner(tokens), new TreeMap<String, CharToken>(), "find", nfa, states).regex();
+        } catch (SyntaxErrorException e) {
+            return null;
+        }
+        if (!tokens.isEmpty()) {
+            return null;
+        }
+        return nfa;
+    }
+
+    /**
+     * The regex the matcher was compiled from.
+     */
+    public String regex() {
+        return regex;
+    }
+
+    /**
+     * The regex compiled by java.util.regex, for replacing.
+     */
+    public Pattern pattern() {
+        return pattern;
+    }
+
+    /**
+     * Whether the regex is matched with a DFA, full or lazy, rather than a
+     * Pattern.
+     */
+    public boolean usesDFA() {
+        return dfa != null || lazyDFA != null;
+    }
+
+    /**
+     * The full DFA the regex is matched with, or null.
+     */
+    IndexedDFA dfa() {
+        return dfa;
+    }
+
+    /**
+     * Whether a whole string matches the regex.
+     */
+    public boolean matches(CharSequence text) {
+        return matches(text, 0, text.length());
+    }
+
+    /**
+     * Whether a part of a text matches the regex as a whole.
+     * @param text The text
+     * @param start The start of the part
+     * @param end The end (exclusive) of the part
+     */
+    public boolean matches(CharSequence text, int start, int end) {
+        if (dfa == null && lazyDFA == null) {
+            return pattern.matcher(text).region(start, end).matches();
+        }
+        if (start == end) {
+            return matchesEmpty;
+        }
+        if (dfa == null) {
+            for (int i = start; i < end; i++) {
+                char c = text.charAt(i);
+                if (c < FIRST_CHAR || c > LAST_CHAR) {
+                    return pattern.matcher(text).region(start, end).matches();
+                }
+            }
+            return lazyDFA.get().matches(text.subSequence(start, end));
+        }
+        int state = dfa.startIndex();
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            state = c < ASCII ? transitions[state * ASCII + c] : FALLBACK;
+            if (state == FALLBACK) {
+                return pattern.matcher(text).region(start, end).matches();
+            } else if (state == DEAD) {
+                return false;
+            }
+        }
+        return finals[state];
+    }
+
+    /**
+     * Whether a part of a byte buffer matches the regex as a whole, taking
+     * every byte as one character, as in ISO-8859-1. Nothing is allocated
+     * unless the part has to be matched with the Pattern or the lazy DFA
+     * builds a state.
+     * @param bytes The buffer, read with absolute gets
+     * @param start The index of the first byte of the part
+     * @param end The index after the last byte of the part
+     */
+    public boolean matches(ByteBuffer bytes, int start, int end) {
+        if (dfa == null && lazyDFA == null) {
+            return pattern.matcher(decode(bytes, start, end)).matches();
+        }
+        if (start == end) {
+            return matchesEmpty;
+        }
+        if (dfa == null) {
+            for (int i = start; i < end; i++) {
+                byte b = bytes.get(i);
+                if (b < FIRST_CHAR || b > LAST_CHAR) {
+                    return pattern.matcher(decode(bytes, start, end)).matches();
+                }
+            }
+            return lazyDFA.get().matches(bytes, start, end);
+        }
+        int state = dfa.startIndex();
+        for (int i = start; i < end; i++) {
+            byte b = bytes.get(i);
+            state = b >= 0 ? transitions[state * ASCII + b] : FALLBACK;
+            if (state == FALLBACK) {
+                return pattern.matcher(decode(bytes, start, end)).matches();
+            } else if (state == DEAD) {
+                return false;
+            }
+        }
+        return finals[state];
+    }
+
+    private static CharSequence decode(ByteBuffer bytes, int start, int end) {
+        ByteBuffer part = bytes.duplicate();
+        part.limit(end);
+        part.position(start);
+        return StandardCharsets.ISO_8859_1.decode(part);
+    }
+
+    @Override
+    public String toString() {
+        return regex;
+    }
+
+    /**
+     * Turns a java.util.regex regex into the regex tokens of a lexical
+     * specification, if both syntaxes mean the same by it.
+     *
+     * Character classes and . are put in parentheses, since the specification
+     * syntax only allows * and + after a character or a parenthesis.
+     */
+    private static final class Translator {
+        private final String regex;
+        private final LinkedList<Token> tokens = new LinkedList<Token>();
+        private int position;
+
+        Translator(String regex) {
+            this.regex = regex;
+        }
+
+        /**
+         * The tokens, or null if the regex uses something the specification
+         * syntax does not have.
+         */
+        LinkedList<Token> translate() {
+            if (!alternation() || position < regex.length()) {
+                return null;
+            }
+            return tokens;
+        }
+
+        private boolean alternation() {
+            if (!sequence()) {
+                return false;
+            }
+            while (peek() == '|') {
+                position++;
+                tokens.add(new Token("|"));
+                if (!sequence()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean sequence() {
+            int atoms = 0;
+            while (position < regex.length() && peek() != '|' && peek() != ')') {
+                if (!atom()) {
+                    return false;
+                }
+                char c = peek();
+                if (c == '*' || c == '+') {
+                    position++;
+                    tokens.add(new Token(Character.toString(c)));
+                    c = peek();
+                    // Nested, lazy and possessive quantifiers
+                    if (c == '*' || c == '+' || c == '?' || c == '{') {
+                        return false;
+                    }
+                }
+                atoms++;
+            }
+            return atoms > 0;
+        }
+
+        private boolean atom() {
+            char c = regex.charAt(position++);
+            switch (c) {
+                case '(':
+                    if (peek() == '?') {
+                        return false;
+                    }
+                    tokens.add(new Token("("));
+                    if (!alternation() || peek() != ')') {
+                        return false;
+                    }
+                    position++;
+                    tokens.add(new Token(")"));
+                    return true;
+                case '[':
+                    return charClass();
+                case '.':
+                    tokens.add(new Token("("));
+                    tokens.add(new Token("."));
+                    tokens.add(new Token(")"));
+                    return true;
+                case '\\':
+                    if (position >= regex.length() || Character.isLetterOrDigit(regex.charAt(position))) {
+                        return false;
+                    }
+                    return literal(regex.charAt(position++));
+                case '?':
+                case '*':
+                case '+':
+                case '{':
+                case '}':
+                case '^':
+                case '$':
+                case ')':
+                    return false;
+                default:
+                    return literal(c);
+            }
+        }
+
+        private boolean literal(char c) {
+            String escaped = "\\" + c;
+            if (RE_CHARS.contains(escaped)) {
+                tokens.add(new Token(escaped));
+            } else if (RE_CHARS.contains(Character.toString(c))) {
+                tokens.add(new Token(Character.toString(c)));
+            } else {
+                return false;
+            }
+            return true;
+        }
+
+        /**
+         * A class without nested classes, intersections or escapes such as
+         * \d. Its characters are listed one by one, complemented over the
+         * printable characters if it starts with ^.
+         */
+        private boolean charClass() {
+            boolean negated = peek() == '^';
+            if (negated) {
+                position++;
+            }
+            boolean[] members = new boolean[LAST_CHAR + 1];
+            boolean first = true;
+            while (true) {
+                if (position >= regex.length()) {
+                    return false;
+                }
+                char c = regex.charAt(position++);
+                if (c == ']' && !first) {
+                    break;
+                }
+                if (c == '[' || c == ']' || (c == '&' && peek() == '&')) {
+                    return false;
+                }
+                if (c == '\\') {
+                    if (position >= regex.length() || Character.isLetterOrDigit(regex.charAt(position))) {
+                        return false;
+                    }
+                    c = regex.charAt(position++);
+                } else if (c == '-' && !first && peek() != ']') {
+                    return false;
+                }
+                char last = c;
+                if (peek() == '-' && position + 1 < regex.length() && regex.charAt(position + 1) != ']') {
+                    position++;
+                    last = regex.charAt(position++);
+                    if (last == '\\' || last == '[' || last == '&') {
+                        return false;
+                    }
+                }
+                if (c < FIRST_CHAR || last > LAST_CHAR || c > last) {
+                    return false;
+                }
+                for (char member = c; member <= last; member++) {
+                    members[member] = true;
+                }
+                first = false;
+            }
+
+            List<Token> chars = new LinkedList<Token>();
+            for (char c = FIRST_CHAR; c <= LAST_CHAR; c++) {
+                if (members[c] != negated) {
+                    String escaped = "\\" + c;
+                    chars.add(new Token(CLS_CHARS.contains(escaped) ? escaped : Character.toString(c)));
+                }
+            }
+            if (chars.isEmpty()) {
+                return false;
+            }
+            tokens.add(new Token("("));
+            tokens.add(new Token("["));
+            tokens.addAll(chars);
+            tokens.add(new Token("]"));
+            tokens.add(new Token(")"));
+            return true;
+        }
+
+        private char peek() {
+            return position < regex.length() ? regex.charAt(position) : 0;
+        }
+    }
+}
@@ -1,13 +1,13 @@
 package scanner;
 
 import scanner.automata.DFA;
-import scanner.automata.State;
+import scanner.automata.IndexedDFA;
+import scanner.automata.TableBasedDFA;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.FileReader;
 import java.io.IOException;
-import java.util.Arrays;
-import java.util.List;
-import java.util.Scanner;
+import java.io.Reader;
 
 /**
  * Takes in a DFA then verifies that a given file contains valid tokens. 
@@ -17,8 +17,9 @@ import java.util.Scanner;
  */
 public class ScannerDriver {
 
-    private DFA dfa;
+    private IndexedDFA dfa;
     private final File file;
+    private final ScriptScanResult result = new ScriptScanResult();
 
     /**
      * Creates and initializes the ScannerDriver
@@ -41,165 +42,62 @@ public class ScannerDriver {
         if (!this.file.exists()) {
             throw new FileNotFoundException();
         }
-        this.dfa = dfa;
+        this.dfa = dfa instanceof IndexedDFA ? (IndexedDFA) dfa : new TableBasedDFA(dfa);
     }
 
     /**
-     * Initiates the scan process.
+     * Initiates the scan process, tokenizing the file with a ScriptTokenizer.
+     * The tokens are added to {@link #getResult()}.
      */
     public void run() {
+        Reader reader = null;
         try {
-            int lineNum = 0;
-            Scanner scan = new Scanner(file);
-            String longestToken;
-            while (scan.hasNextLine()) {
-                longestToken = "";
-                String line = scan.nextLine();
-                lineNum++;
-                int startIndex = 0;
-                int endIndex = 0;
-                while (endIndex < line.length()) {
-                    longestToken = "";
-                    boolean accepted = false;
-
-                    // Correct for scanner problems on single character tokens, >!, and regexes.
-                    switch (line.charAt(startIndex)) {
-                        case '=':
-                        case '#':
-                        case ';':
-                        case ')':
-                        case '(':
-                        case ',':
-                            newToken(line.substring(startIndex, startIndex + 1));
-                            startIndex++;
-                            endIndex = startIndex;
-                          //  System.out.println("Single Token: " + line.substring(startIndex - 1, startIndex));
-                            continue;
-                        case ' ':
-                            startIndex++;
-                            endIndex = startIndex;
-                        //    System.out.println("Skipped space character");
-                            continue;
-                        case '>':
-                            endIndex++;
-                            if (line.charAt(endIndex) == '!') {
-                                longestToken = line.substring(startIndex, endIndex + 1);
-                            }
-                            break;
-                        case '\'':
-                            endIndex++;
-                            while (endIndex < line.length()) {
-                                if (line.charAt(endIndex) == '\'' && line.charAt(endIndex - 1) != '\\') {
-                                    longestToken = line.substring(startIndex, endIndex + 1);
-                                    break;
-                                }
-                                endIndex++;
-                            }
-                            break;
-                         case '\"':
-                            endIndex++;
-                            while (endIndex < line.length()) {
-                                if (line.charAt(endIndex) == '\"' && line.charAt(endIndex - 1) != '\\') {
-                                    longestToken = line.substring(startIndex, endIndex + 1);
-                                    break;
-                                }
-                                endIndex++;
-                            }
-                            break;
-                    }
-//                    while (!accepted && endIndex < line.length()) {
-//                        endIndex += 1;
-//                        accepted = parse(line.substring(startIndex, endIndex));
-//                    }
-//
-//                    while (accepted && endIndex < line.length()) {
-//                        endIndex += 1;
-//                        accepted = parse(line.substring(startIndex, endIndex));
-//                    }
-                    if (longestToken.length() <= 0) {
-                        while (endIndex < line.length()) {
-                            accepted = parse(line.substring(startIndex, endIndex + 1));
-                            if (accepted) {
-                                longestToken = line.substring(startIndex, endIndex + 1);
-                            }
-                            endIndex++;
-                        }
-                    }
-
-                    if (longestToken.length() <= 0) {
-                        startIndex++;
-                        endIndex = startIndex;
-                       // System.out.println("No token, advancing pointer.");
-                        continue;
-                    }
-
-                    startIndex += longestToken.length();
-                    endIndex = startIndex;
-                   // System.out.println("Longest Token: " + longestToken);
-                    newToken(longestToken);
-                }
+            reader = new FileReader(file);
+            ScriptTokenizer tokenizer = new ScriptTokenizer(dfa, reader);
+            for (ScriptToken token = tokenizer.nextToken(); token != null; token = tokenizer.nextToken()) {
+                result.add(token);
             }
-            // builder.exportXML(file.getName().substring(0, file.getName().lastIndexOf('.')));
         } catch (FileNotFoundException ex) {
         } catch (IOException ex) {
-            System.out.println("Unable to write output.");
+            System.out.println("Unable to read input.");
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException ex) {
+                }
+            }
         }
     }
 
-    public boolean parse(String word) {
-        // builder.reset();
-
-        State currState = dfa.startState();
-
-        for (char character : word.toCharArray()) {
-            currState = dfa.transition(currState, character);
-//            if (currState != null) {
-//                builder.xmlize(character, currState.getTokens());
-//            }
-        }
-//        builder.finalizeXML();
-        if (currState != null) {
-            if (currState.isFinal()) {
-                if (currState.getTokens().isEmpty()) {
-                 //   System.out.println(word + ": ACCEPT (" + currState.topToken().getValue() + ")");
-                }
-
-              //  System.out.println(word + ": ACCEPT");
-                return true;
-            } else {
-              //  System.out.println(word + ": REJECT");
-                return false;
-            }
+    /**
+     * The tokens found by this driver.
+     * @return The scan result.
+     */
+    public ScriptScanResult getResult() {
+        return result;
+    }
 
-        } else {
-          //  System.out.println(word + ": REJECT");
-            return false;
+    /**
+     * Whether the whole word is accepted by the DFA.
+     * @param word The word to check
+     * @return True if the DFA ends in a final state.
+     */
+    public boolean parse(String word) {
+        int state = dfa.startIndex();
+        for (int i = 0; i < word.length() && state >= 0; i++) {
+            state = dfa.next(state, word.charAt(i));
         }
-        // return false;
+        return state >= 0 && dfa.isFinal(state);
     }
 
     public void error(int line) {
         System.out.println("Error at line " + line);
     }
-    private String[] keywords = {"begin", "end", "=", "replace", "with", "in", ";", "recursivereplace", ">!", "print", "(", ")", ",", "#", "find", "diff", "union", "inters", "maxfreqstring"};
-    private List<String> keywordList = Arrays.asList(keywords);
-
     public void newToken(String token) {
         if (token.length() < 1) {
             error(0);
         }
-        ScriptScanner.tokens.add(token);
-        switch (token.charAt(0)) {
-            case '\'':
-                ScriptScanner.regexes.add(token);
-                break;
-            case '\"':
-                ScriptScanner.strconsts.add(token);
-                break;
-            default:
-                if (!keywordList.contains(token)) {
-                    ScriptScanner.identifiers.add(token);
-                }
-        }
+        result.add(new ScriptToken(TokenKind.of(token), token, 0, 0, 0));
     }
 }
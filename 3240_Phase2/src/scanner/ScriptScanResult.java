@@ -0,0 +1,97 @@
+package scanner;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+import scanner.exceptions.SyntaxErrorException;
+
+/**
+ * The tokens of one scanned MiniRE script.
+ *
+ * Every scan fills its own result, so any number of scripts can be scanned at
+ * the same time. A result is thread safe: tokens are added under its lock and
+ * the getters return copies, so a parser consuming a token queue or stream
+ * does not change what other readers of the result see.
+ */
+public class ScriptScanResult {
+    private final List<ScriptToken> tokens = new ArrayList<ScriptToken>();
+    private final List<String> identifiers = new ArrayList<String>();
+    private final List<String> regexes = new ArrayList<String>();
+    private final List<String> strconsts = new ArrayList<String>();
+
+    /**
+     * Records a token in the token list and in the list for its kind.
+     * @param token The token to record
+     */
+    public synchronized void add(ScriptToken token) {
+        tokens.add(token);
+        switch (token.getKind()) {
+            case REGEX:
+                regexes.add(token.getText());
+                break;
+            case ASCII_STR:
+                strconsts.add(token.getText());
+                break;
+            case ID:
+                identifiers.add(token.getText());
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * The tokens in the order they appear in the script.
+     */
+    public synchronized List<ScriptToken> getTokens() {
+        return Collections.unmodifiableList(new ArrayList<ScriptToken>(tokens));
+    }
+
+    /**
+     * A new queue of the token texts, in the order they appear in the script,
+     * for the parser to consume.
+     */
+    public synchronized Deque<String> tokenQueue() {
+        Deque<String> queue = new ArrayDeque<String>(tokens.size());
+        for (ScriptToken token : tokens) {
+            queue.add(token.getText());
+        }
+        return queue;
+    }
+
+    /**
+     * A new stream of the tokens as int codes, for the parser to consume.
+     */
+    public synchronized TokenStream tokenStream() {
+        return TokenStream.of(tokens);
+    }
+
+    public synchronized List<String> getIdentifiers() {
+        return Collections.unmodifiableList(new ArrayList<String>(identifiers));
+    }
+
+    public synchronized List<String> getRegexes() {
+        return Collections.unmodifiableList(new ArrayList<String>(regexes));
+    }
+
+    public synchronized List<String> getStrconsts() {
+        return Collections.unmodifiableList(new ArrayList<String>(strconsts));
+    }
+
+    /**
+     * Checks that no identifier is longer than 10 characters.
+     * @throws SyntaxErrorException thrown for the first identifier that is.
+     */
+    public synchronized void checkIDs() throws SyntaxErrorException {
+        for (String a : identifiers) {
+            if (a.length() > 10) {
+                String err = "Identifier '" + a + "' too long; must be 10 chars at most!";
+                System.out.println(err);
+                throw new SyntaxErrorException(err);
+            }
+        }
+    }
+}
@@ -1,25 +1,24 @@
 package scanner;
 
 import java.io.*;
-import java.util.ArrayDeque;
-import java.util.ArrayList;
-import java.util.Deque;
-import java.util.List;
 
 import javax.swing.JFileChooser;
 import javax.swing.JOptionPane;
 
 import scanner.automata.DFA;
-import scanner.automata.NFA;
-import scanner.conversion.NFAtoDFA;
 import scanner.exceptions.SyntaxErrorException;
-import scanner.generateNFA.FinalNFA;
 
+/**
+ * Scans MiniRE scripts with the lexer built from the MiniRE lexical
+ * specification.
+ *
+ * The scanner keeps no state of its own: the lexer is an immutable DFA shared
+ * through {@link LexerCache} and every scan returns its tokens in a new
+ * {@link ScriptScanResult}, so scripts can be scanned from many threads at
+ * once.
+ */
 public class ScriptScanner {
-    public static List<String> identifiers;
-    public static List<String> regexes;
-    public static List<String> strconsts;
-    public static Deque<String> tokens;
+    private static final String SPEC_FILE = "MiniRE_LexSpec.txt";
 
     /**
      * Creates the DFA and ScannerDriver using the files containing the regexes
@@ -29,20 +28,18 @@ public class ScriptScanner {
      * 
      * @param args 1st argument is used as the name of the file containing all 
      * of the tokens
+     * @return The tokens of the script.
      * @throws SyntaxErrorException 
      * @throws IOException 
      * @throws FileNotFoundException 
      */
-    public static void scan() throws FileNotFoundException, IOException, SyntaxErrorException {
-        identifiers = new ArrayList<String>();
-        regexes = new ArrayList<String>();
-        strconsts = new ArrayList<String>();
-        tokens = new ArrayDeque<String>();
+    public static ScriptScanResult scan() throws FileNotFoundException, IOException, SyntaxErrorException {
+        ScriptScanResult result = new ScriptScanResult();
 
         //System.out.println("Using Lexical Specification for MinRE: " + ScriptScanner.class.getResource("MiniRE_LexSpec.txt").toString().substring(6));
         //DFA dfa = generateDFA(ScriptScanner.class.getResource("MiniRE_LexSpec.txt").toString().substring(6));
 
-        DFA dfa = generateDFA("MiniRE_LexSpec.txt");
+        DFA dfa = generateDFA(SPEC_FILE);
 
         File inputFile;
 
@@ -54,12 +51,14 @@ public class ScriptScanner {
         try {
             ScannerDriver driver = new ScannerDriver(inputFile, dfa);
             driver.run();
+            result = driver.getResult();
         } catch (FileNotFoundException ex) {
             System.out.println("Error: Cannot find file");
             System.out.println(ex.getMessage());
         }
         
-        checkIDs();
+        result.checkIDs();
+        return result;
     }
 
     /**
@@ -70,63 +69,59 @@ public class ScriptScanner {
      * 
      * @param args 1st argument is used as the name of the file containing all 
      * of the tokens
+     * @return The tokens of the script.
      * @throws SyntaxErrorException 
      * @throws IOException 
      * @throws FileNotFoundException 
      */
-    public static void scan(String input, File directory) throws FileNotFoundException, IOException, SyntaxErrorException {
-        identifiers = new ArrayList<String>();
-        regexes = new ArrayList<String>();
-        strconsts = new ArrayList<String>();
-        tokens = new ArrayDeque<String>();
+    public static ScriptScanResult scan(String input, File directory) throws FileNotFoundException, IOException, SyntaxErrorException {
+        ScriptScanResult result = new ScriptScanResult();
 
         //System.out.println("Using Lexical Specification for MinRE: " + ScriptScanner.class.getResource("MiniRE_LexSpec.txt").toString().substring(6));
         //DFA dfa = generateDFA(ScriptScanner.class.getResource("MiniRE_LexSpec.txt").toString().substring(6));
 
-        DFA dfa = generateDFA("MiniRE_LexSpec.txt");
+        DFA dfa = generateDFA(SPEC_FILE);
 
-        File temp_file = new File("temp.tmp");
-        FileWriter f = null;
-        BufferedWriter b = null;
-        PrintWriter p = null;
-
-        try {
-            f = new FileWriter(temp_file, false);
-            b = new BufferedWriter(f);
-            p = new PrintWriter(b);
-
-            p.print(input);
-        } catch (IOException e) {
-            System.out.println("Error creating temp file");
-        } finally {
-            if (p != null) p.close();
+        ScriptTokenizer tokenizer = new ScriptTokenizer(dfa, input);
+        for (ScriptToken token = tokenizer.nextToken(); token != null; token = tokenizer.nextToken()) {
+            result.add(token);
         }
 
-
-        try {
-            ScannerDriver driver = new ScannerDriver(temp_file, dfa);
-            driver.run();
-        } catch (FileNotFoundException ex) {
-            System.out.println("Error: Cannot find file");
-            System.out.println(ex.getMessage());
-        }
-        
-        checkIDs();
+        result.checkIDs();
+        return result;
     }
 
-    private static DFA generateDFA(String fileName) throws FileNotFoundException, IOException, SyntaxErrorException {
-        FinalNFA NFAgen = new FinalNFA();
-        NFA nfa = NFAgen.generate(fileName);
-        return NFAtoDFA.dfaFromNFA(nfa);
+    /**
+     * Creates a lexer that keeps the tokens of a script up to date while it
+     * is edited.
+     * @return A lexer for an empty script.
+     * @throws SyntaxErrorException 
+     * @throws IOException 
+     * @throws FileNotFoundException 
+     */
+    public static IncrementalLexer incrementalLexer() throws FileNotFoundException, IOException, SyntaxErrorException {
+        return new IncrementalLexer(generateDFA(SPEC_FILE));
     }
-    
-    public static void checkIDs() throws SyntaxErrorException {
-        for (String a : ScriptScanner.identifiers) {
-            if (a.length() > 10) {
-                String err = "Identifier '" + a + "' too long; must be 10 chars at most!";
-                System.out.println(err);
-                throw new SyntaxErrorException(err);
+
+    /**
+     * Starts loading the lexer in the background, so that the first scan does
+     * not have to wait for it. Errors are left for scan to report.
+     */
+    public static void preload() {
+        Thread loader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    generateDFA(SPEC_FILE);
+                } catch (Exception ex) {
+                }
             }
-        }
+        }, "lexer-preload");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    private static DFA generateDFA(String fileName) throws FileNotFoundException, IOException, SyntaxErrorException {
+        return LexerCache.lexerFor(fileName);
     }
 }
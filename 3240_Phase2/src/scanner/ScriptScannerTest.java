@@ -1,43 +1,62 @@
-/*
- * To change this template, choose Tools | Templates
- * and open the template in the editor.
- */
-package scanner;
-
-import ast.AbstractSyntaxTree;
-import parser.LLParser;
-import parser.MiniREErrorException;
-import scanner.exceptions.SyntaxErrorException;
-
-
-/**
- *
- * @author Paul
- */
-public class ScriptScannerTest {
-    public static void main(String[] args) throws java.io.FileNotFoundException, java.io.IOException, SyntaxErrorException, MiniREErrorException {
-        ScriptScanner.scan();
-        System.out.println("-> Tokens:");
-        for (String a : ScriptScanner.tokens) {
-            System.out.println(a);
-        }
-        System.out.println("-> String Constants:");
-        for (String a : ScriptScanner.strconsts) {
-            System.out.println(a);
-        }
-        System.out.println("-> Identifiers:");
-        for (String a : ScriptScanner.identifiers) {
-            System.out.println(a);
-        }
-        System.out.println("-> Regexes:");
-        for (String a : ScriptScanner.regexes) {
-            System.out.println(a);
-        }
-        System.out.println("End");
-        
-        LLParser parser = new LLParser(ScriptScanner.identifiers, ScriptScanner.regexes, ScriptScanner.tokens);
-		AbstractSyntaxTree tree = parser.parse();
-        System.out.println(tree);
-    }
-    
-}
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package scanner;
+
+import ast.AbstractSyntaxTree;
+import parser.LLParser;
+import parser.MiniREErrorException;
+import scanner.exceptions.SyntaxErrorException;
+
+
+/**
+ *
+ * @author Paul
+ */
+public class ScriptScannerTest {
+    public static void main(String[] args) throws java.io.FileNotFoundException, java.io.IOException, SyntaxErrorException, MiniREErrorException {
+        literals();
+        ScriptScanResult result = ScriptScanner.scan();
+        System.out.println("-> Tokens:");
+        for (String a : result.tokenQueue()) {
+            System.out.println(a);
+        }
+        System.out.println("-> String Constants:");
+        for (String a : result.getStrconsts()) {
+            System.out.println(a);
+        }
+        System.out.println("-> Identifiers:");
+        for (String a : result.getIdentifiers()) {
+            System.out.println(a);
+        }
+        System.out.println("-> Regexes:");
+        for (String a : result.getRegexes()) {
+            System.out.println(a);
+        }
+        System.out.println("End");
+        
+        LLParser parser = new LLParser(result.tokenStream());
+		AbstractSyntaxTree tree = parser.parse();
+        System.out.println(tree);
+    }
+
+    /**
+     * Scans a script whose literals hold a tab and a non-ASCII letter, which
+     * must stay inside their REGEX and ASCII-STR tokens.
+     */
+    private static void literals() throws java.io.IOException, SyntaxErrorException, MiniREErrorException {
+        String script = "begin\nx = find 'caf\u00e9' in \"f\tx.txt\";\nend\n";
+        ScriptScanResult result = ScriptScanner.scan(script, new java.io.File("."));
+        System.out.println("-> Literal tokens:");
+        for (String a : result.tokenQueue()) {
+            System.out.println(a);
+        }
+        if (!result.getRegexes().contains("'caf\u00e9'")
+                || !result.getStrconsts().contains("\"f\tx.txt\"")) {
+            System.out.println("FAILED: literals were split");
+        }
+        new LLParser(result.tokenStream()).parse();
+    }
+    
+}
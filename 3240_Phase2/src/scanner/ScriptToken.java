@@ -0,0 +1,72 @@
+package scanner;
+
+/**
+ * A token of a MiniRE script together with where it was found.
+ *
+ * Lines and columns are numbered from 1. Offsets count characters from the
+ * start of the input. A token never spans more than one line.
+ */
+public final class ScriptToken {
+    private final TokenKind kind;
+    private final String text;
+    private final int line;
+    private final int column;
+    private final int offset;
+
+    /**
+     * Creates a token.
+     * @param kind The kind of the token
+     * @param text The token as it appears in the script
+     * @param line The line the token is on
+     * @param column The column of the first character of the token
+     * @param offset The offset of the first character of the token
+     */
+    public ScriptToken(TokenKind kind, String text, int line, int column, int offset) {
+        this.kind = kind;
+        this.text = text;
+        this.line = line;
+        this.column = column;
+        this.offset = offset;
+    }
+
+    public TokenKind getKind() {
+        return kind;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public int getLine() {
+        return line;
+    }
+
+    public int getColumn() {
+        return column;
+    }
+
+    /**
+     * The column just past the last character of the token.
+     * @return The end column (exclusive).
+     */
+    public int getEndColumn() {
+        return column + text.length();
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * The offset just past the last character of the token.
+     * @return The end offset (exclusive).
+     */
+    public int getEndOffset() {
+        return offset + text.length();
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+}
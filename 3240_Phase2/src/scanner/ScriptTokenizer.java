@@ -0,0 +1,257 @@
+package scanner;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+
+import scanner.automata.DFA;
+import scanner.automata.IndexedDFA;
+import scanner.automata.TableBasedDFA;
+
+/**
+ * Splits a MiniRE script into tokens using the DFA built from the lexical
+ * specification.
+ *
+ * The script can be given as a CharSequence, a Reader or a ByteBuffer, and
+ * tokens are produced one at a time by {@link #nextToken()}, so nothing is
+ * written to disk and a Reader is only read as far as the tokens asked for.
+ * Each line is tokenized with maximal munch: the DFA runs forward from the
+ * current position, remembering the last position at which it accepted, until
+ * it dies or the line ends. Characters that start no token, such as spaces,
+ * are skipped.
+ *
+ * The specification only knows printable ASCII, but a quoted literal may hold
+ * any character except its closing quote and a line break. Inside a token
+ * that starts with a quote, a character the DFA has no transition for, such
+ * as a tab or a non-ASCII letter, is read as a space, which every literal
+ * body accepts.
+ *
+ * A tokenizer is not thread safe, but any number of tokenizers can share one
+ * DFA.
+ */
+public class ScriptTokenizer {
+    private static final int NONE = -2;
+    // Read in place of a character the DFA does not know inside a literal
+    private static final char LITERAL_STAND_IN = ' ';
+
+    private final IndexedDFA dfa;
+    private final Reader reader;
+
+    // The current text: the whole input when it is in memory, or the current
+    // line when it is read from a Reader.
+    private CharSequence text;
+    private int textOffset;
+    private int nextTextOffset;
+    private int pending = NONE;
+
+    private int line;
+    private int lineStart;
+    private int lineEnd;
+    private int position;
+
+    /**
+     * Creates a tokenizer over text in memory.
+     * @param dfa The DFA for the lexical specification
+     * @param input The script
+     */
+    public ScriptTokenizer(DFA dfa, CharSequence input) {
+        this.dfa = tableOf(dfa);
+        this.reader = null;
+        this.text = input;
+    }
+
+    /**
+     * Creates a tokenizer that reads the script as tokens are requested. The
+     * reader is not closed by the tokenizer.
+     * @param dfa The DFA for the lexical specification
+     * @param input The script
+     */
+    public ScriptTokenizer(DFA dfa, Reader input) {
+        this.dfa = tableOf(dfa);
+        this.reader = input instanceof BufferedReader ? input : new BufferedReader(input);
+        this.text = "";
+    }
+
+    /**
+     * Creates a tokenizer over the remaining bytes of a buffer, one character
+     * per byte (ISO-8859-1). The bytes are read in place and the position of
+     * the buffer is not changed.
+     * @param dfa The DFA for the lexical specification
+     * @param input The script
+     */
+    public ScriptTokenizer(DFA dfa, ByteBuffer input) {
+        this(dfa, new ByteSequence(input.slice()));
+    }
+
+    private static IndexedDFA tableOf(DFA dfa) {
+        return dfa instanceof IndexedDFA ? (IndexedDFA) dfa : new TableBasedDFA(dfa);
+    }
+
+    /**
+     * Finds the next token.
+     * @return The next token, or null at the end of the input.
+     * @throws IOException thrown if the script cannot be read.
+     */
+    public ScriptToken nextToken() throws IOException {
+        while (true) {
+            if (line == 0 || position >= lineEnd) {
+                if (!nextLine()) {
+                    return null;
+                }
+                continue;
+            }
+            int endIndex = longestMatch(position);
+            if (endIndex <= position) {
+                position++;
+                continue;
+            }
+            String token = text.subSequence(position, endIndex).toString();
+            ScriptToken scriptToken = new ScriptToken(TokenKind.of(token), token,
+                    line, position - lineStart + 1, textOffset + position);
+            position = endIndex;
+            return scriptToken;
+        }
+    }
+
+    /**
+     * Finds the end of the longest token starting at the given position of
+     * the current line.
+     * @return The end (exclusive) of the token, or -1 if none starts there.
+     */
+    private int longestMatch(int startIndex) {
+        int state = dfa.startIndex();
+        int lastAccept = -1;
+        char first = text.charAt(startIndex);
+        for (int i = startIndex; i < lineEnd; i++) {
+            state = next(dfa, state, first, text.charAt(i));
+            if (state < 0 || dfa.isDead(state)) {
+                break;
+            }
+            if (dfa.isFinal(state)) {
+                lastAccept = i + 1;
+            }
+        }
+        return lastAccept;
+    }
+
+    /**
+     * The state the DFA moves to on a character of a token that starts with
+     * the given character. Inside a quoted literal, a character the DFA has
+     * no transition for is read as a space.
+     * @return The next state, or a negative number if there is none.
+     */
+    static int next(IndexedDFA dfa, int state, char first, char letter) {
+        int next = dfa.next(state, letter);
+        if (next < 0 && (first == '\'' || first == '"')) {
+            next = dfa.next(state, LITERAL_STAND_IN);
+        }
+        return next;
+    }
+
+    /**
+     * Moves to the start of the next line.
+     * @return False if there are no more lines.
+     */
+    private boolean nextLine() throws IOException {
+        if (reader != null) {
+            return readLine();
+        }
+        int start = 0;
+        if (line > 0) {
+            start = lineEnd;
+            if (start < text.length() && text.charAt(start) == '\r') {
+                start++;
+            }
+            if (start < text.length() && text.charAt(start) == '\n') {
+                start++;
+            }
+        }
+        if (start >= text.length()) {
+            return false;
+        }
+        int end = start;
+        while (end < text.length() && text.charAt(end) != '\n' && text.charAt(end) != '\r') {
+            end++;
+        }
+        line++;
+        lineStart = start;
+        lineEnd = end;
+        position = start;
+        return true;
+    }
+
+    /**
+     * Reads the next line from the reader. A line ends at \n, \r or \r\n,
+     * like in BufferedReader.readLine, but the length of the line break is
+     * kept so that offsets stay exact.
+     */
+    private boolean readLine() throws IOException {
+        int c = pending != NONE ? pending : reader.read();
+        pending = NONE;
+        if (c < 0) {
+            return false;
+        }
+        StringBuilder builder = new StringBuilder();
+        while (c >= 0 && c != '\n' && c != '\r') {
+            builder.append((char) c);
+            c = reader.read();
+        }
+        int terminator = c < 0 ? 0 : 1;
+        if (c == '\r') {
+            int next = reader.read();
+            if (next == '\n') {
+                terminator = 2;
+            } else {
+                pending = next;
+            }
+        }
+
+        textOffset = nextTextOffset;
+        nextTextOffset += builder.length() + terminator;
+        text = builder;
+        line++;
+        lineStart = 0;
+        lineEnd = builder.length();
+        position = 0;
+        return true;
+    }
+
+    /**
+     * A read-only view of a byte buffer as characters, one per byte.
+     */
+    private static class ByteSequence implements CharSequence {
+        private final ByteBuffer bytes;
+
+        ByteSequence(ByteBuffer bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public int length() {
+            return bytes.limit();
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (bytes.get(index) & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            ByteBuffer slice = bytes.duplicate();
+            slice.position(start);
+            slice.limit(end);
+            return new ByteSequence(slice.slice());
+        }
+
+        @Override
+        public String toString() {
+            char[] chars = new char[length()];
+            for (int i = 0; i < chars.length; i++) {
+                chars[i] = charAt(i);
+            }
+            return new String(chars);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package scanner;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The kinds of tokens a MiniRE script is made of.
+ */
+public enum TokenKind {
+    /** A reserved word or punctuation, such as begin, =, ( or >! */
+    KEYWORD,
+    /** An identifier */
+    ID,
+    /** A regex literal in single quotes */
+    REGEX,
+    /** A string literal in double quotes */
+    ASCII_STR;
+
+    private static final Set<String> KEYWORDS = new HashSet<String>(Arrays.asList(
+            "begin", "end", "=", "replace", "with", "in", ";", "recursivereplace", ">!", "print",
+            "(", ")", ",", "#", "find", "diff", "union", "inters", "maxfreqstring"));
+
+    /**
+     * Classifies the text of a token.
+     * @param text The token as it appears in the script
+     * @return The kind of the token.
+     */
+    public static TokenKind of(String text) {
+        if (text.startsWith("'")) {
+            return REGEX;
+        } else if (text.startsWith("\"")) {
+            return ASCII_STR;
+        } else if (KEYWORDS.contains(text)) {
+            return KEYWORD;
+        } else {
+            return ID;
+        }
+    }
+}
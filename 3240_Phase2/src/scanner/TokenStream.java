@@ -0,0 +1,261 @@
+package scanner;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The tokens of a MiniRE script as int codes, for the parser to consume.
+ *
+ * Every token has a code telling exactly which terminal it is (an identifier,
+ * a regex, a string or one particular keyword), its text and where it was
+ * found. The parser can therefore dispatch on the code instead of comparing
+ * strings. Lexemes are interned per stream, so repeated identifiers and
+ * keywords share one String.
+ *
+ * The tokens of a stream never change; only the position does. A stream is
+ * not thread safe, but streams are cheap to create from a
+ * {@link ScriptScanResult} and can then be used by one parser each.
+ */
+public final class TokenStream {
+    /** The code returned at the end of the stream. */
+    public static final int END_OF_INPUT = -1;
+
+    public static final int ID = 0;
+    public static final int REGEX = 1;
+    public static final int ASCII_STR = 2;
+    public static final int BEGIN = 3;
+    public static final int END = 4;
+    public static final int EQUAL_SIGN = 5;
+    public static final int REPLACE = 6;
+    public static final int RECURSIVEREPLACE = 7;
+    public static final int WITH = 8;
+    public static final int IN = 9;
+    public static final int REDIRECT = 10;
+    public static final int SEMI_COLON = 11;
+    public static final int PRINT = 12;
+    public static final int LEFT_PAREN = 13;
+    public static final int RIGHT_PAREN = 14;
+    public static final int COMMA = 15;
+    public static final int HASH_TAG = 16;
+    public static final int FIND = 17;
+    public static final int DIFF = 18;
+    public static final int UNION = 19;
+    public static final int INTERS = 20;
+    public static final int MAXFREQSTRING = 21;
+    /** The number of token codes. Codes run from 0 to CODE_COUNT - 1. */
+    public static final int CODE_COUNT = 22;
+
+    private static final Map<String, Integer> KEYWORDS = new HashMap<String, Integer>();
+
+    static {
+        KEYWORDS.put("begin", BEGIN);
+        KEYWORDS.put("end", END);
+        KEYWORDS.put("=", EQUAL_SIGN);
+        KEYWORDS.put("replace", REPLACE);
+        KEYWORDS.put("recursivereplace", RECURSIVEREPLACE);
+        KEYWORDS.put("with", WITH);
+        KEYWORDS.put("in", IN);
+        KEYWORDS.put(">!", REDIRECT);
+        KEYWORDS.put(";", SEMI_COLON);
+        KEYWORDS.put("print", PRINT);
+        KEYWORDS.put("(", LEFT_PAREN);
+        KEYWORDS.put(")", RIGHT_PAREN);
+        KEYWORDS.put(",", COMMA);
+        KEYWORDS.put("#", HASH_TAG);
+        KEYWORDS.put("find", FIND);
+        KEYWORDS.put("diff", DIFF);
+        KEYWORDS.put("union", UNION);
+        KEYWORDS.put("inters", INTERS);
+        KEYWORDS.put("maxfreqstring", MAXFREQSTRING);
+    }
+
+    private final int[] codes;
+    private final String[] lexemes;
+    private final int[] lines;
+    private final int[] columns;
+    private final int[] offsets;
+    private final int size;
+    private int position;
+
+    private TokenStream(Builder builder) {
+        this.size = builder.size;
+        this.codes = Arrays.copyOf(builder.codes, size);
+        this.lexemes = Arrays.copyOf(builder.lexemes, size);
+        this.lines = Arrays.copyOf(builder.lines, size);
+        this.columns = Arrays.copyOf(builder.columns, size);
+        this.offsets = Arrays.copyOf(builder.offsets, size);
+    }
+
+    /**
+     * Creates a stream of scanned tokens.
+     * @param tokens The tokens, in order
+     * @return The stream.
+     */
+    public static TokenStream of(List<ScriptToken> tokens) {
+        Builder builder = new Builder();
+        for (ScriptToken token : tokens) {
+            builder.add(token);
+        }
+        return builder.build();
+    }
+
+    /**
+     * The code of a keyword.
+     * @param text The text of a token
+     * @return The code of the keyword, or END_OF_INPUT if the text is not a keyword.
+     */
+    public static int keywordCode(String text) {
+        Integer code = KEYWORDS.get(text);
+        return code == null ? END_OF_INPUT : code;
+    }
+
+    /**
+     * The code of a scanned token.
+     * @param kind The kind of the token
+     * @param text The text of the token
+     * @return Its code.
+     */
+    public static int codeOf(TokenKind kind, String text) {
+        switch (kind) {
+            case REGEX:
+                return REGEX;
+            case ASCII_STR:
+                return ASCII_STR;
+            case KEYWORD:
+                int code = keywordCode(text);
+                if (code != END_OF_INPUT) return code;
+                break;
+            default:
+                break;
+        }
+        return ID;
+    }
+
+    /**
+     * The number of tokens in the stream.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * The index of the current token.
+     */
+    public int position() {
+        return position;
+    }
+
+    public boolean hasNext() {
+        return position < size;
+    }
+
+    /**
+     * The code of the current token, or END_OF_INPUT.
+     */
+    public int peekCode() {
+        return position < size ? codes[position] : END_OF_INPUT;
+    }
+
+    /**
+     * The text of the current token, or null at the end of the stream.
+     */
+    public String peekText() {
+        return position < size ? lexemes[position] : null;
+    }
+
+    /**
+     * The line of the current token, or 0 at the end of the stream.
+     */
+    public int peekLine() {
+        return position < size ? lines[position] : 0;
+    }
+
+    /**
+     * The column of the current token, or 0 at the end of the stream.
+     */
+    public int peekColumn() {
+        return position < size ? columns[position] : 0;
+    }
+
+    /**
+     * The offset of the current token, or -1 at the end of the stream.
+     */
+    public int peekOffset() {
+        return position < size ? offsets[position] : -1;
+    }
+
+    /**
+     * Moves to the next token.
+     * @throws IllegalStateException thrown at the end of the stream.
+     */
+    public void advance() {
+        if (position >= size) {
+            throw new IllegalStateException("End of token stream");
+        }
+        position++;
+    }
+
+    /**
+     * Collects tokens into a TokenStream.
+     */
+    public static final class Builder {
+        private final Map<String, String> interned = new HashMap<String, String>();
+        private int[] codes = new int[16];
+        private String[] lexemes = new String[16];
+        private int[] lines = new int[16];
+        private int[] columns = new int[16];
+        private int[] offsets = new int[16];
+        private int size;
+
+        /**
+         * Adds a scanned token.
+         * @param token The token
+         * @return This builder.
+         */
+        public Builder add(ScriptToken token) {
+            return add(codeOf(token.getKind(), token.getText()), token.getText(),
+                    token.getLine(), token.getColumn(), token.getOffset());
+        }
+
+        /**
+         * Adds a token.
+         * @param code The code of the token
+         * @param text The text of the token
+         * @param line The line of the token, or 0 if unknown
+         * @param column The column of the token, or 0 if unknown
+         * @param offset The offset of the token, or 0 if unknown
+         * @return This builder.
+         */
+        public Builder add(int code, String text, int line, int column, int offset) {
+            if (code < 0 || code >= CODE_COUNT) {
+                throw new IllegalArgumentException("Invalid token code " + code);
+            }
+            if (size == codes.length) {
+                int capacity = size * 2;
+                codes = Arrays.copyOf(codes, capacity);
+                lexemes = Arrays.copyOf(lexemes, capacity);
+                lines = Arrays.copyOf(lines, capacity);
+                columns = Arrays.copyOf(columns, capacity);
+                offsets = Arrays.copyOf(offsets, capacity);
+            }
+            String lexeme = interned.get(text);
+            if (lexeme == null) {
+                lexeme = text;
+                interned.put(text, text);
+            }
+            codes[size] = code;
+            lexemes[size] = lexeme;
+            lines[size] = line;
+            columns[size] = column;
+            offsets[size] = offset;
+            size++;
+            return this;
+        }
+
+        public TokenStream build() {
+            return new TokenStream(this);
+        }
+    }
+}
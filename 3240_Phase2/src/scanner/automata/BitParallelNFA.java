@@ -0,0 +1,252 @@
+package scanner.automata;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+
+/**
+ * Simulates an NFA over sets of states stored as long[] bitsets.
+ *
+ * The states reachable from the start state are numbered densely and, for
+ * every state and every letter class of the alphabet, the set of states after
+ * the move (including the epsilon closure) is computed once up front. Stepping
+ * the active set is then an OR over the precomputed rows of its members, so
+ * running the NFA does not allocate anything per character.
+ *
+ * The low-level methods work on caller-owned arrays of {@link #wordCount()}
+ * longs. The NFA used to build the simulator is not modified.
+ */
+public class BitParallelNFA {
+    private State[] states;
+    private HashMap<State, Integer> stateIndex;
+    private AlphabetPartition partition;
+    private int classes;
+    private int words;
+    private long[][] moves;
+    private long[] startSet;
+    private long[] finalMask;
+
+    /**
+     * Numbers the reachable states of the given NFA and precomputes its moves.
+     * @param nfa The NFA to simulate.
+     */
+    public BitParallelNFA(NFA nfa) {
+        partition = AlphabetPartition.of(nfa);
+        classes = partition.classCount();
+
+        List<State> stateList = new ArrayList<State>();
+        List<Set<State>> rows = new ArrayList<Set<State>>();
+        stateIndex = new HashMap<State, Integer>();
+        Queue<State> fringe = new LinkedList<State>();
+
+        for (State state : nfa.startStates()) {
+            number(state, stateList, fringe);
+        }
+        while (!fringe.isEmpty()) {
+            State currState = fringe.poll();
+            for (int cls = 0; cls < classes; cls++) {
+                Set<State> nextStates = nfa.transitions(currState, partition.representative(cls));
+                rows.add(nextStates);
+                if (nextStates == null) continue;
+                for (State nextState : nextStates) {
+                    number(nextState, stateList, fringe);
+                }
+            }
+            Set<State> epsilonStates = nfa.transitions(currState, null);
+            if (epsilonStates != null) {
+                for (State nextState : epsilonStates) {
+                    number(nextState, stateList, fringe);
+                }
+            }
+        }
+
+        states = stateList.toArray(new State[0]);
+        words = (states.length + 63) >>> 6;
+
+        moves = new long[rows.size()][];
+        for (int i = 0; i < moves.length; i++) {
+            Set<State> nextStates = rows.get(i);
+            if (nextStates != null) {
+                moves[i] = toBits(nextStates);
+            }
+        }
+        startSet = toBits(nfa.startStates());
+        finalMask = new long[words];
+        for (int i = 0; i < states.length; i++) {
+            if (states[i].isFinal()) {
+                finalMask[i >>> 6] |= 1L << i;
+            }
+        }
+    }
+
+    private void number(State state, List<State> stateList, Queue<State> fringe) {
+        if (!stateIndex.containsKey(state)) {
+            stateIndex.put(state, stateList.size());
+            stateList.add(state);
+            fringe.add(state);
+        }
+    }
+
+    private long[] toBits(Set<State> set) {
+        long[] bits = new long[words];
+        for (State state : set) {
+            int index = stateIndex.get(state);
+            bits[index >>> 6] |= 1L << index;
+        }
+        return bits;
+    }
+
+    /**
+     * The number of longs in a state set.
+     * @return The length every bitset passed to this class must have.
+     */
+    public int wordCount() {
+        return words;
+    }
+
+    /**
+     * The number of NFA states being simulated.
+     * @return The state count.
+     */
+    public int stateCount() {
+        return states.length;
+    }
+
+    /**
+     * The start state and everything reachable from it over epsilon.
+     * @return A fresh copy of the start set.
+     */
+    public long[] startSet() {
+        return startSet.clone();
+    }
+
+    /**
+     * Copies the start set into an existing bitset.
+     * @param to The bitset to overwrite.
+     */
+    public void start(long[] to) {
+        System.arraycopy(startSet, 0, to, 0, words);
+    }
+
+    /**
+     * Moves every state of a set over a letter class.
+     * @param from The active states. It is not modified.
+     * @param cls A class id of {@link #partition()}, or -1 for a letter
+     * outside the alphabet
+     * @param to Receives the states after the move. It must not be from.
+     * @return True if the resulting set is not empty.
+     */
+    public boolean step(long[] from, int cls, long[] to) {
+        for (int w = 0; w < words; w++) {
+            to[w] = 0;
+        }
+        if (cls < 0) return false;
+
+        boolean any = false;
+        for (int w = 0; w < words; w++) {
+            long word = from[w];
+            while (word != 0) {
+                int index = (w << 6) + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+                long[] row = moves[index * classes + cls];
+                if (row == null) continue;
+                for (int i = 0; i < words; i++) {
+                    to[i] |= row[i];
+                }
+                any = true;
+            }
+        }
+        return any;
+    }
+
+    /**
+     * Moves every state of a set over a character.
+     * @param from The active states. It is not modified.
+     * @param letter The character to move over
+     * @param to Receives the states after the move. It must not be from.
+     * @return True if the resulting set is not empty.
+     */
+    public boolean step(long[] from, char letter, long[] to) {
+        return step(from, partition.classOf(letter), to);
+    }
+
+    /**
+     * Whether a set contains a final state.
+     * @param set A state set
+     * @return True if any member is final.
+     */
+    public boolean isAccepting(long[] set) {
+        for (int w = 0; w < words; w++) {
+            if ((set[w] & finalMask[w]) != 0) return true;
+        }
+        return false;
+    }
+
+    /**
+     * The NFA state with the given number.
+     * @param index A bit position
+     * @return The state.
+     */
+    public State state(int index) {
+        return states[index];
+    }
+
+    /**
+     * The number given to an NFA state.
+     * @param state A state of the simulated NFA
+     * @return Its bit position, or -1 if the state is unreachable.
+     */
+    public int indexOf(State state) {
+        Integer index = stateIndex.get(state);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * The letter classes the moves were computed for.
+     * @return The alphabet partition.
+     */
+    public AlphabetPartition partition() {
+        return partition;
+    }
+
+    /**
+     * Whether the NFA accepts the whole input.
+     * @param input The input to run
+     * @return True if the input is accepted.
+     */
+    public boolean matches(CharSequence input) {
+        long[] curr = startSet();
+        long[] next = new long[words];
+        for (int i = 0; i < input.length(); i++) {
+            if (!step(curr, input.charAt(i), next)) return false;
+            long[] swap = curr;
+            curr = next;
+            next = swap;
+        }
+        return isAccepting(curr);
+    }
+
+    /**
+     * Finds the longest accepted prefix of the input starting at an offset.
+     * @param input The input to run
+     * @param start The offset to start at
+     * @return The end offset (exclusive) of the longest match, or -1 if no
+     * prefix is accepted.
+     */
+    public int longestMatch(CharSequence input, int start) {
+        long[] curr = startSet();
+        long[] next = new long[words];
+        int end = isAccepting(curr) ? start : -1;
+        for (int i = start; i < input.length(); i++) {
+            if (!step(curr, input.charAt(i), next)) break;
+            long[] swap = curr;
+            curr = next;
+            next = swap;
+            if (isAccepting(curr)) end = i + 1;
+        }
+        return end;
+    }
+}
@@ -0,0 +1,39 @@
+package scanner.automata;
+
+/**
+ * A DFA whose states are numbered 0 to stateCount() - 1 and can be run on
+ * those numbers directly, without going through State objects.
+ */
+public interface IndexedDFA extends DFA {
+    /**
+     * The number of states.
+     */
+    public int stateCount();
+
+    /**
+     * The index of the start state.
+     */
+    public int startIndex();
+
+    /**
+     * The index of the state reached from the given state over a letter, or
+     * -1 if there is no such transition.
+     */
+    public int next(int fromIndex, char letter);
+
+    /**
+     * Whether the state with the given index is final.
+     */
+    public boolean isFinal(int index);
+
+    /**
+     * Whether no final state can be reached from the state with the given
+     * index.
+     */
+    public boolean isDead(int index);
+
+    /**
+     * The state object for the given index.
+     */
+    public State state(int index);
+}
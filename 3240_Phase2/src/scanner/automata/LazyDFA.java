@@ -0,0 +1,285 @@
+package scanner.automata;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * A DFA that is built while it runs.
+ *
+ * Instead of converting the whole NFA up front, each DFA state (a set of NFA
+ * states) is created the first time the input reaches it and its transitions
+ * are filled in one letter class at a time. The states live in a cache of a
+ * fixed size. When the cache is full it is flushed and rebuilt from the
+ * current state, and when a search flushes too often for the characters it
+ * gets through, the rest of that search runs directly on the NFA. Matching is
+ * therefore linear in the input and memory stays within the configured budget
+ * even for regexes whose full DFA would be exponential.
+ *
+ * The matching methods are synchronized, since they share the cache. Threads
+ * that match often should each have their own lazy DFA over the same
+ * {@link BitParallelNFA}, which is not modified while it runs.
+ */
+public class LazyDFA {
+    /** The number of DFA states cached when no budget is given. */
+    public static final int DEFAULT_MAX_STATES = 1024;
+
+    private static final int UNKNOWN = -2;
+    private static final int DEAD = -1;
+    // A search gives up on the cache after this many flushes if it averaged
+    // fewer than MIN_CHARS_PER_STATE characters per state built.
+    private static final int MAX_FLUSHES = 3;
+    private static final int MIN_CHARS_PER_STATE = 10;
+
+    private BitParallelNFA nfa;
+    private AlphabetPartition partition;
+    private int classes;
+    private int maxStates;
+
+    private HashMap<StateKey, Integer> cache;
+    private long[][] sets;
+    private boolean[] accepting;
+    private int[] table;
+    private int stateCount;
+    private int startIndex;
+    private int flushCount;
+
+    /**
+     * Creates a lazy DFA with the default cache size.
+     * @param nfa The NFA to run.
+     */
+    public LazyDFA(NFA nfa) {
+        this(new BitParallelNFA(nfa), DEFAULT_MAX_STATES);
+    }
+
+    /**
+     * Creates a lazy DFA over an existing NFA simulator.
+     * @param nfa The simulator to build states from
+     * @param maxStates The most DFA states kept at once, at least 3
+     */
+    public LazyDFA(BitParallelNFA nfa, int maxStates) {
+        if (maxStates < 3) {
+            throw new IllegalArgumentException("maxStates must be at least 3: " + maxStates);
+        }
+        this.nfa = nfa;
+        this.partition = nfa.partition();
+        this.classes = partition.classCount();
+        this.maxStates = maxStates;
+        this.cache = new HashMap<StateKey, Integer>();
+        this.sets = new long[maxStates][];
+        this.accepting = new boolean[maxStates];
+        this.table = new int[maxStates * classes];
+        flush();
+    }
+
+    /**
+     * Whether the whole input is accepted.
+     * @param input The input to run
+     * @return True if the input is accepted.
+     */
+    public synchronized boolean matches(CharSequence input) {
+        int flushesAtStart = flushCount;
+        int curr = startIndex;
+        for (int i = 0; i < input.length(); i++) {
+            int cls = partition.classOf(input.charAt(i));
+            if (cls < 0) return false;
+            int next = table[curr * classes + cls];
+            if (next == UNKNOWN) {
+                if (thrashing(flushesAtStart, i)) {
+                    return simulateMatches(input, i, sets[curr]);
+                }
+                next = computeNext(curr, cls);
+            }
+            if (next == DEAD) return false;
+            curr = next;
+        }
+        return accepting[curr];
+    }
+
+    /**
+     * Whether a part of a byte buffer is accepted as a whole, taking every
+     * byte as one character, as in ISO-8859-1.
+     * @param bytes The buffer, read with absolute gets
+     * @param start The index of the first byte of the part
+     * @param end The index after the last byte of the part
+     * @return True if the part is accepted.
+     */
+    public synchronized boolean matches(ByteBuffer bytes, int start, int end) {
+        int flushesAtStart = flushCount;
+        int curr = startIndex;
+        for (int i = start; i < end; i++) {
+            int cls = partition.classOf((char) (bytes.get(i) & 0xFF));
+            if (cls < 0) return false;
+            int next = table[curr * classes + cls];
+            if (next == UNKNOWN) {
+                if (thrashing(flushesAtStart, i - start)) {
+                    return simulateMatches(bytes, i, end, sets[curr]);
+                }
+                next = computeNext(curr, cls);
+            }
+            if (next == DEAD) return false;
+            curr = next;
+        }
+        return accepting[curr];
+    }
+
+    /**
+     * Finds the longest accepted prefix of the input starting at an offset.
+     * @param input The input to run
+     * @param start The offset to start at
+     * @return The end offset (exclusive) of the longest match, or -1 if no
+     * prefix is accepted.
+     */
+    public synchronized int longestMatch(CharSequence input, int start) {
+        int flushesAtStart = flushCount;
+        int curr = startIndex;
+        int end = accepting[curr] ? start : -1;
+        for (int i = start; i < input.length(); i++) {
+            int cls = partition.classOf(input.charAt(i));
+            if (cls < 0) break;
+            int next = table[curr * classes + cls];
+            if (next == UNKNOWN) {
+                if (thrashing(flushesAtStart, i - start)) {
+                    return simulateLongestMatch(input, i, sets[curr], end);
+                }
+                next = computeNext(curr, cls);
+            }
+            if (next == DEAD) break;
+            curr = next;
+            if (accepting[curr]) end = i + 1;
+        }
+        return end;
+    }
+
+    /**
+     * The number of DFA states currently cached.
+     * @return The state count.
+     */
+    public synchronized int cachedStates() {
+        return stateCount;
+    }
+
+    /**
+     * How many times the cache has been flushed since it was created.
+     * @return The flush count.
+     */
+    public synchronized int flushCount() {
+        return flushCount;
+    }
+
+    private boolean thrashing(int flushesAtStart, int charsScanned) {
+        int flushes = flushCount - flushesAtStart;
+        return flushes >= MAX_FLUSHES
+                && charsScanned < flushes * maxStates * MIN_CHARS_PER_STATE;
+    }
+
+    /**
+     * Fills in one missing transition, flushing the cache if the target state
+     * does not fit. Returns the index of the target, which is only valid until
+     * the next flush.
+     */
+    private int computeNext(int curr, int cls) {
+        long[] nextSet = new long[nfa.wordCount()];
+        if (!nfa.step(sets[curr], cls, nextSet)) {
+            table[curr * classes + cls] = DEAD;
+            return DEAD;
+        }
+        StateKey key = new StateKey(nextSet);
+        Integer next = cache.get(key);
+        if (next == null) {
+            if (stateCount == maxStates) {
+                // The current state has to survive the flush to keep the
+                // transition, so it is re-added right after the start state.
+                long[] currSet = sets[curr];
+                flush();
+                curr = intern(new StateKey(currSet));
+                next = cache.get(key);
+            }
+            if (next == null) {
+                next = intern(key);
+            }
+        }
+        table[curr * classes + cls] = next;
+        return next;
+    }
+
+    private int intern(StateKey key) {
+        Integer index = cache.get(key);
+        if (index != null) return index;
+        index = stateCount++;
+        cache.put(key, index);
+        sets[index] = key.bits;
+        accepting[index] = nfa.isAccepting(key.bits);
+        Arrays.fill(table, index * classes, (index + 1) * classes, UNKNOWN);
+        return index;
+    }
+
+    private void flush() {
+        if (stateCount > 0) flushCount++;
+        cache.clear();
+        Arrays.fill(sets, null);
+        stateCount = 0;
+        startIndex = intern(new StateKey(nfa.startSet()));
+    }
+
+    private boolean simulateMatches(CharSequence input, int from, long[] set) {
+        long[] curr = set.clone();
+        long[] next = new long[curr.length];
+        for (int i = from; i < input.length(); i++) {
+            if (!nfa.step(curr, input.charAt(i), next)) return false;
+            long[] swap = curr;
+            curr = next;
+            next = swap;
+        }
+        return nfa.isAccepting(curr);
+    }
+
+    private boolean simulateMatches(ByteBuffer bytes, int from, int end, long[] set) {
+        long[] curr = set.clone();
+        long[] next = new long[curr.length];
+        for (int i = from; i < end; i++) {
+            if (!nfa.step(curr, (char) (bytes.get(i) & 0xFF), next)) return false;
+            long[] swap = curr;
+            curr = next;
+            next = swap;
+        }
+        return nfa.isAccepting(curr);
+    }
+
+    private int simulateLongestMatch(CharSequence input, int from, long[] set, int end) {
+        long[] curr = set.clone();
+        long[] next = new long[curr.length];
+        for (int i = from; i < input.length(); i++) {
+            if (!nfa.step(curr, input.charAt(i), next)) break;
+            long[] swap = curr;
+            curr = next;
+            next = swap;
+            if (nfa.isAccepting(curr)) end = i + 1;
+        }
+        return end;
+    }
+
+    /**
+     * A set of NFA states used as a cache key. The bits must not change once
+     * the key is created.
+     */
+    private static class StateKey {
+        private final long[] bits;
+        private final int hash;
+
+        StateKey(long[] bits) {
+            this.bits = bits;
+            this.hash = Arrays.hashCode(bits);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof StateKey && Arrays.equals(bits, ((StateKey) obj).bits);
+        }
+    }
+}
@@ -1,7 +1,10 @@
 package scanner.automata;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -16,6 +19,14 @@ public class MapBasedNFA implements NFA {
     private Set<State> finalStates;
     private HashMap<State, HashMap<Character, HashSet<State>>> transitions;
 
+    // Epsilon closure index, rebuilt lazily after the transitions change.
+    // Every state is numbered, states in the same strongly connected
+    // component share one closure array.
+    private HashMap<State, Integer> closureIndex;
+    private State[] closureStates;
+    private int[] componentOf;
+    private int[][] componentClosures;
+
     /**
      * Must start out with a given start state.
      * @param startState The start state to begin with
@@ -45,6 +56,7 @@ public class MapBasedNFA implements NFA {
      */
     public void addTransition(State fromState, Character character, State toState) {
         alphabet.add(character);
+        closureIndex = null;
         if (toState.isFinal()) {
             finalStates.add(toState);
         }
@@ -110,6 +122,9 @@ public class MapBasedNFA implements NFA {
 
     /**
      * Getter for a HashMap of transitions existing in the NFA.
+     * 
+     * The map is the live internal map and must only be read. Use
+     * addTransition to change the NFA.
      * @return HashMap of all transitions.
      */
     public HashMap<State, HashMap<Character, HashSet<State>>> getTransitions() {
@@ -117,25 +132,147 @@ public class MapBasedNFA implements NFA {
     }
 
     /**
-     * A recursive helper function that adds all the states coming from a given
-     * state over epsilon transitions.
+     * Adds all the states reachable from a given state over epsilon 
+     * transitions, using the precomputed closure index.
      * @param set The set to add all the states to
      * @param currState The state to start from (it is assumed that this was 
      * already added to the states)
      */
     private void addEpsilonTransitions(Set<State> set, State currState) {
-        if (transitions.containsKey(currState)) {
-            HashMap<Character, HashSet<State>> transitionsForState = transitions.get(currState);
-            if (transitionsForState.containsKey(null)) {
-                Set<State> states = transitionsForState.get(null);
-                for (State childState : states) {
-                    if (!set.contains(childState)) {
-                        set.add(childState);
-                        addEpsilonTransitions(set, childState);
+        if (closureIndex == null) {
+            buildClosureIndex();
+        }
+        Integer index = closureIndex.get(currState);
+        if (index == null) {
+            return;
+        }
+        for (int member : componentClosures[componentOf[index]]) {
+            set.add(closureStates[member]);
+        }
+    }
+
+    /**
+     * Computes the epsilon closure of every state at once.
+     * 
+     * The strongly connected components of the epsilon graph are found with an
+     * iterative version of Tarjan's algorithm. Components are completed in 
+     * reverse topological order, so the closure of a component is its members
+     * plus the already finished closures of the components it points to.
+     */
+    private void buildClosureIndex() {
+        closureIndex = new HashMap<State, Integer>();
+        List<State> stateList = new ArrayList<State>();
+        for (State state : transitions.keySet()) {
+            indexState(state, stateList);
+        }
+        for (HashMap<Character, HashSet<State>> transitionsForState : transitions.values()) {
+            HashSet<State> epsilonStates = transitionsForState.get(null);
+            if (epsilonStates == null) continue;
+            for (State state : epsilonStates) {
+                indexState(state, stateList);
+            }
+        }
+        closureStates = stateList.toArray(new State[0]);
+        int stateCount = closureStates.length;
+
+        int[][] epsilonEdges = new int[stateCount][];
+        for (int i = 0; i < stateCount; i++) {
+            HashMap<Character, HashSet<State>> transitionsForState = transitions.get(closureStates[i]);
+            HashSet<State> epsilonStates = transitionsForState == null ? null : transitionsForState.get(null);
+            if (epsilonStates == null) {
+                epsilonEdges[i] = new int[0];
+                continue;
+            }
+            epsilonEdges[i] = new int[epsilonStates.size()];
+            int j = 0;
+            for (State state : epsilonStates) {
+                epsilonEdges[i][j++] = closureIndex.get(state);
+            }
+        }
+
+        int[] order = new int[stateCount];
+        int[] lowLink = new int[stateCount];
+        boolean[] onStack = new boolean[stateCount];
+        int[] sccStack = new int[stateCount];
+        int sccTop = 0;
+        int[] callStack = new int[stateCount];
+        int[] edgeCursor = new int[stateCount];
+        int counter = 0;
+        componentOf = new int[stateCount];
+        int[] seenStamp = new int[stateCount];
+        int[] members = new int[stateCount];
+        List<int[]> closures = new ArrayList<int[]>();
+
+        for (int root = 0; root < stateCount; root++) {
+            if (order[root] != 0) continue;
+            int callTop = 0;
+            callStack[callTop++] = root;
+            order[root] = lowLink[root] = ++counter;
+            sccStack[sccTop++] = root;
+            onStack[root] = true;
+
+            while (callTop > 0) {
+                int v = callStack[callTop - 1];
+                if (edgeCursor[v] < epsilonEdges[v].length) {
+                    int w = epsilonEdges[v][edgeCursor[v]++];
+                    if (order[w] == 0) {
+                        order[w] = lowLink[w] = ++counter;
+                        sccStack[sccTop++] = w;
+                        onStack[w] = true;
+                        callStack[callTop++] = w;
+                    } else if (onStack[w] && order[w] < lowLink[v]) {
+                        lowLink[v] = order[w];
                     }
+                    continue;
+                }
+
+                callTop--;
+                if (callTop > 0) {
+                    int parent = callStack[callTop - 1];
+                    if (lowLink[v] < lowLink[parent]) lowLink[parent] = lowLink[v];
                 }
+                if (lowLink[v] != order[v]) continue;
+
+                // v is the root of a finished component, pop its members
+                int component = closures.size();
+                int start = sccTop;
+                do {
+                    start--;
+                    onStack[sccStack[start]] = false;
+                    componentOf[sccStack[start]] = component;
+                } while (sccStack[start] != v);
+
+                // seenStamp marks the states already added for this component
+                int stamp = component + 1;
+                int size = 0;
+                for (int i = start; i < sccTop; i++) {
+                    int member = sccStack[i];
+                    seenStamp[member] = stamp;
+                    members[size++] = member;
+                }
+                for (int i = start; i < sccTop; i++) {
+                    for (int target : epsilonEdges[sccStack[i]]) {
+                        if (componentOf[target] == component) continue;
+                        for (int reached : closures.get(componentOf[target])) {
+                            if (seenStamp[reached] != stamp) {
+                                seenStamp[reached] = stamp;
+                                members[size++] = reached;
+                            }
+                        }
+                    }
+                }
+                sccTop = start;
+                closures.add(Arrays.copyOf(members, size));
             }
         }
+        componentClosures = closures.toArray(new int[0][]);
+    }
+
+    private void indexState(State state, List<State> stateList) {
+        if (!closureIndex.containsKey(state)) {
+            closureIndex.put(state, stateList.size());
+            stateList.add(state);
+        }
     }
 
     @Override
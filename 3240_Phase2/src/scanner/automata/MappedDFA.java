@@ -0,0 +1,366 @@
+package scanner.automata;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.Stack;
+
+/**
+ * A DFA read in place from the binary DFA format, typically from a memory
+ * mapped file.
+ *
+ * Opening the DFA parses only the header, but also checks that every class,
+ * transition, token and name reference in the buffer is in range, so that a
+ * damaged or foreign file is rejected up front. Transitions and flags are
+ * then read straight from the buffer, and State objects and their tokens are
+ * only decoded when they are asked for. The format is big-endian
+ * and every section starts on a 4-byte boundary:
+ * <pre>
+ * header      14 ints: MAGIC, VERSION, state count, class count, start index,
+ *             class map length, then the offsets of the flags, table, token
+ *             index, token refs, name index and name bytes sections, the name
+ *             count and the total length
+ * class map   int per character below the map length: its letter class, or -1
+ * flags       byte per state: FINAL_FLAG | DEAD_FLAG
+ * table       int per state and class: the next state, or -1
+ * token index int per state plus one: where its tokens start in token refs
+ * token refs  int per token, bottom of the stack first: name << 1 | start
+ * name index  int per name plus one: where it starts in name bytes
+ * name bytes  the UTF-8 token names
+ * </pre>
+ */
+public class MappedDFA implements IndexedDFA {
+    /** The first int of every binary DFA. */
+    public static final int MAGIC = 0x4D444641;
+    /** The version of the format written by {@link #write(DFA, OutputStream)}. */
+    public static final int VERSION = 1;
+
+    private static final int HEADER_INTS = 14;
+    private static final int FINAL_FLAG = 1;
+    private static final int DEAD_FLAG = 2;
+    private static final int NO_STATE = -1;
+
+    private final ByteBuffer buffer;
+    private final int stateCount;
+    private final int classCount;
+    private final int startIndex;
+    private final int mapLength;
+    private final int flagsOffset;
+    private final int tableOffset;
+    private final int tokenIndexOffset;
+    private final int tokenRefsOffset;
+    private final int nameIndexOffset;
+    private final int nameBytesOffset;
+    private final int nameCount;
+
+    private State[] states;
+
+    /**
+     * Opens a binary DFA. The DFA reads the buffer from its current position
+     * on; neither the position nor the contents of the buffer may be changed
+     * afterwards.
+     * @param buffer The binary DFA
+     * @throws IllegalArgumentException thrown if the buffer does not hold a
+     * valid binary DFA of this version.
+     */
+    public MappedDFA(ByteBuffer buffer) {
+        this.buffer = buffer.slice().order(ByteOrder.BIG_ENDIAN);
+        if (this.buffer.limit() < HEADER_INTS * 4 || this.buffer.getInt(0) != MAGIC) {
+            throw new IllegalArgumentException("Not a binary DFA");
+        }
+        if (this.buffer.getInt(4) != VERSION) {
+            throw new IllegalArgumentException("Unsupported binary DFA version " + this.buffer.getInt(4));
+        }
+        stateCount = header(2);
+        classCount = header(3);
+        startIndex = header(4);
+        mapLength = header(5);
+        flagsOffset = header(6);
+        tableOffset = header(7);
+        tokenIndexOffset = header(8);
+        tokenRefsOffset = header(9);
+        nameIndexOffset = header(10);
+        nameBytesOffset = header(11);
+        nameCount = header(12);
+        int length = header(13);
+
+        if (length > this.buffer.limit() || stateCount <= 0 || startIndex >= stateCount
+                || stateCount > length || mapLength > length / 4 || nameCount > length / 4
+                || (long) stateCount * classCount * 4 > length
+                || flagsOffset != HEADER_INTS * 4 + mapLength * 4
+                || tableOffset < flagsOffset + stateCount
+                || tokenIndexOffset != tableOffset + stateCount * classCount * 4
+                || tokenRefsOffset != tokenIndexOffset + (stateCount + 1) * 4
+                || nameIndexOffset < tokenRefsOffset
+                || nameBytesOffset != nameIndexOffset + (nameCount + 1) * 4
+                || nameBytesOffset > length) {
+            throw new IllegalArgumentException("Corrupt binary DFA");
+        }
+        validate(length);
+        states = new State[stateCount];
+    }
+
+    /**
+     * Checks every entry of the class map, the table and the token and name
+     * sections against the bounds given by the header.
+     */
+    private void validate(int length) {
+        for (int letter = 0; letter < mapLength; letter++) {
+            int cls = buffer.getInt(HEADER_INTS * 4 + letter * 4);
+            if (cls < NO_STATE || cls >= classCount) {
+                throw new IllegalArgumentException("Corrupt binary DFA: letter class " + cls);
+            }
+        }
+        for (int offset = tableOffset; offset < tokenIndexOffset; offset += 4) {
+            int next = buffer.getInt(offset);
+            if (next < NO_STATE || next >= stateCount) {
+                throw new IllegalArgumentException("Corrupt binary DFA: transition to " + next);
+            }
+        }
+        checkIndex(tokenIndexOffset, stateCount, (nameIndexOffset - tokenRefsOffset) / 4);
+        for (int offset = tokenRefsOffset; offset < nameIndexOffset; offset += 4) {
+            int ref = buffer.getInt(offset);
+            if (ref < 0 || ref >>> 1 >= nameCount) {
+                throw new IllegalArgumentException("Corrupt binary DFA: token " + ref);
+            }
+        }
+        checkIndex(nameIndexOffset, nameCount, length - nameBytesOffset);
+    }
+
+    /**
+     * Checks that an index section of count + 1 ints starts at 0 or more, never
+     * decreases and ends at most at the given limit.
+     */
+    private void checkIndex(int offset, int count, int limit) {
+        int previous = 0;
+        for (int i = 0; i <= count; i++) {
+            int value = buffer.getInt(offset + i * 4);
+            if (value < previous || value > limit) {
+                throw new IllegalArgumentException("Corrupt binary DFA: index " + value);
+            }
+            previous = value;
+        }
+    }
+
+    private int header(int index) {
+        int value = buffer.getInt(index * 4);
+        if (value < 0) {
+            throw new IllegalArgumentException("Corrupt binary DFA");
+        }
+        return value;
+    }
+
+    /**
+     * Writes a DFA in the binary format.
+     * @param dfa The DFA to write
+     * @param out Destination. It is flushed but not closed.
+     * @throws IOException thrown if the DFA cannot be written.
+     */
+    public static void write(DFA dfa, OutputStream out) throws IOException {
+        TableBasedDFA table = dfa instanceof TableBasedDFA ? (TableBasedDFA) dfa : new TableBasedDFA(dfa);
+        AlphabetPartition partition = table.partition();
+        int states = table.stateCount();
+        int classes = partition.classCount();
+
+        int mapLength = 0;
+        for (int cls = 0; cls < classes; cls++) {
+            for (char letter : partition.members(cls)) {
+                mapLength = Math.max(mapLength, letter + 1);
+            }
+        }
+
+        HashMap<String, Integer> nameIds = new HashMap<String, Integer>();
+        List<byte[]> names = new ArrayList<byte[]>();
+        int[] tokenIndex = new int[states + 1];
+        List<Integer> tokenRefs = new ArrayList<Integer>();
+        for (int state = 0; state < states; state++) {
+            tokenIndex[state] = tokenRefs.size();
+            for (Token token : table.state(state).getTokens()) {
+                Integer nameId = nameIds.get(token.getValue());
+                if (nameId == null) {
+                    nameId = names.size();
+                    nameIds.put(token.getValue(), nameId);
+                    names.add(token.getValue().getBytes(StandardCharsets.UTF_8));
+                }
+                tokenRefs.add(nameId << 1 | (token.isStartToken() ? 1 : 0));
+            }
+        }
+        tokenIndex[states] = tokenRefs.size();
+
+        int flagsOffset = HEADER_INTS * 4 + mapLength * 4;
+        int tableOffset = align(flagsOffset + states);
+        int tokenIndexOffset = tableOffset + states * classes * 4;
+        int tokenRefsOffset = tokenIndexOffset + (states + 1) * 4;
+        int nameIndexOffset = tokenRefsOffset + tokenRefs.size() * 4;
+        int nameBytesOffset = nameIndexOffset + (names.size() + 1) * 4;
+        int nameBytes = 0;
+        for (byte[] name : names) {
+            nameBytes += name.length;
+        }
+
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(states);
+        data.writeInt(classes);
+        data.writeInt(table.startIndex());
+        data.writeInt(mapLength);
+        data.writeInt(flagsOffset);
+        data.writeInt(tableOffset);
+        data.writeInt(tokenIndexOffset);
+        data.writeInt(tokenRefsOffset);
+        data.writeInt(nameIndexOffset);
+        data.writeInt(nameBytesOffset);
+        data.writeInt(names.size());
+        data.writeInt(nameBytesOffset + nameBytes);
+
+        for (int letter = 0; letter < mapLength; letter++) {
+            data.writeInt(partition.classOf((char) letter));
+        }
+        for (int state = 0; state < states; state++) {
+            data.writeByte((table.isFinal(state) ? FINAL_FLAG : 0) | (table.isDead(state) ? DEAD_FLAG : 0));
+        }
+        for (int i = flagsOffset + states; i < tableOffset; i++) {
+            data.writeByte(0);
+        }
+        for (int state = 0; state < states; state++) {
+            for (int cls = 0; cls < classes; cls++) {
+                data.writeInt(table.next(state, partition.representative(cls)));
+            }
+        }
+        for (int index : tokenIndex) {
+            data.writeInt(index);
+        }
+        for (int ref : tokenRefs) {
+            data.writeInt(ref);
+        }
+        int nameStart = 0;
+        for (byte[] name : names) {
+            data.writeInt(nameStart);
+            nameStart += name.length;
+        }
+        data.writeInt(nameStart);
+        for (byte[] name : names) {
+            data.write(name);
+        }
+        data.flush();
+    }
+
+    private static int align(int offset) {
+        return (offset + 3) & ~3;
+    }
+
+    @Override
+    public int stateCount() {
+        return stateCount;
+    }
+
+    @Override
+    public int startIndex() {
+        return startIndex;
+    }
+
+    @Override
+    public int next(int fromIndex, char letter) {
+        if (letter >= mapLength) return NO_STATE;
+        int cls = buffer.getInt(HEADER_INTS * 4 + letter * 4);
+        if (cls < 0) return NO_STATE;
+        return buffer.getInt(tableOffset + (fromIndex * classCount + cls) * 4);
+    }
+
+    @Override
+    public boolean isFinal(int index) {
+        return (buffer.get(flagsOffset + index) & FINAL_FLAG) != 0;
+    }
+
+    @Override
+    public boolean isDead(int index) {
+        return (buffer.get(flagsOffset + index) & DEAD_FLAG) != 0;
+    }
+
+    /**
+     * The state object for the given index. States are decoded the first time
+     * they are asked for and reused afterwards.
+     */
+    @Override
+    public synchronized State state(int index) {
+        if (states[index] == null) {
+            states[index] = new State(index, tokensOf(index));
+            states[index].setFinal(isFinal(index));
+        }
+        return states[index];
+    }
+
+    private Stack<Token> tokensOf(int index) {
+        Stack<Token> tokens = new Stack<Token>();
+        int from = buffer.getInt(tokenIndexOffset + index * 4);
+        int to = buffer.getInt(tokenIndexOffset + (index + 1) * 4);
+        for (int i = from; i < to; i++) {
+            int ref = buffer.getInt(tokenRefsOffset + i * 4);
+            tokens.push(new Token(name(ref >>> 1), (ref & 1) != 0));
+        }
+        return tokens;
+    }
+
+    private String name(int nameId) {
+        int start = buffer.getInt(nameIndexOffset + nameId * 4);
+        int end = buffer.getInt(nameIndexOffset + (nameId + 1) * 4);
+        byte[] bytes = new byte[end - start];
+        ByteBuffer name = buffer.duplicate();
+        name.position(nameBytesOffset + start);
+        name.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public State transition(State fromState, Character letter) {
+        if (fromState == null || letter == null) return null;
+        int fromIndex = fromState.id();
+        if (fromIndex < 0 || fromIndex >= stateCount || state(fromIndex) != fromState) return null;
+        int nextIndex = next(fromIndex, letter);
+        return nextIndex == NO_STATE ? null : state(nextIndex);
+    }
+
+    @Override
+    public State startState() {
+        return state(startIndex);
+    }
+
+    @Override
+    public Set<State> allStates() {
+        Set<State> allStates = new HashSet<State>();
+        for (int i = 0; i < stateCount; i++) {
+            allStates.add(state(i));
+        }
+        return allStates;
+    }
+
+    @Override
+    public Set<Character> alphabet() {
+        Set<Character> alphabet = new HashSet<Character>();
+        for (int letter = 0; letter < mapLength; letter++) {
+            if (buffer.getInt(HEADER_INTS * 4 + letter * 4) >= 0) {
+                alphabet.add((char) letter);
+            }
+        }
+        return alphabet;
+    }
+
+    @Override
+    public Set<State> finalStates() {
+        Set<State> finalStates = new HashSet<State>();
+        for (int i = 0; i < stateCount; i++) {
+            if (isFinal(i)) finalStates.add(state(i));
+        }
+        return finalStates;
+    }
+}
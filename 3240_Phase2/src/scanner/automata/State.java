@@ -1,33 +1,49 @@
 package scanner.automata;
 
-import java.util.Random;
 import java.util.Stack;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Tokens are stored in the state in a stack. The top token is
  * the most general token applying to the State, and the bottom token is the 
  * most specific/smallest token.
+ * 
+ * Every state has an int id. States made by a {@link StateFactory} are 
+ * numbered 0, 1, 2, ... within that factory so they can index arrays; states
+ * made with the public constructors draw ids from one global counter. Two 
+ * states are only equal if they are the same object.
  */
 public class State {
+    private static final AtomicInteger nextGlobalId = new AtomicInteger();
+
     private boolean finalState;
     private String name;
-    private int id;
+    private final int id;
     private Stack<Token> tokens;
-    private static int count = 0;
 
     public State() {
         this(new Stack<Token>());
     }
 
     public State(Stack<Token> tokens) {
+        this(nextGlobalId.getAndIncrement(), tokens);
+    }
+
+    State(int id, Stack<Token> tokens) {
         this.tokens = new Stack<Token>();
         this.tokens.addAll(tokens);
 
-        this.name = "q" + count;
-        this.id = (new Random()).nextInt();
+        this.id = id;
         this.finalState = false;
+    }
 
-        count++;
+    /**
+     * The id of this state. For states made by a StateFactory this is the 
+     * index of the state within its automaton.
+     * @return The id.
+     */
+    public int id() {
+        return id;
     }
 
     /**
@@ -75,30 +91,24 @@ public class State {
     
 
     public String getName() {
-		return name;
-	}
+        if (name == null) {
+            name = "q" + id;
+        }
+        return name;
+    }
 
-	@Override
+    @Override
     public boolean equals(Object o) {
-        return (o instanceof State && ((State) o).id == this.id);
+        return this == o;
     }
 
     @Override
     public int hashCode() {
-        int hash = 3;
-        hash = 41 * hash + this.id;
-        return hash;
+        return id;
     }
 
     @Override
     public String toString() {
-        return name;
-    }
-
-    /**
-     * Resets the count to zero.
-     */
-    public static void resetCount() {
-        count = 0;
+        return getName();
     }
 }
\ No newline at end of file
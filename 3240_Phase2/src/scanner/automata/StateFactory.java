@@ -0,0 +1,40 @@
+package scanner.automata;
+
+import java.util.Stack;
+
+/**
+ * Hands out states with dense ids for a single automaton.
+ * 
+ * The first state made by a factory has id 0, the next id 1 and so on, so the
+ * ids can be used directly as array indexes. A factory is meant to be used by
+ * the one thread building its automaton; separate automata should each use
+ * their own factory.
+ */
+public class StateFactory {
+    private int nextId;
+
+    /**
+     * Creates a state with no tokens.
+     * @return The new state.
+     */
+    public State newState() {
+        return new State(nextId++, new Stack<Token>());
+    }
+
+    /**
+     * Creates a state holding a copy of the given tokens.
+     * @param tokens The tokens for the state
+     * @return The new state.
+     */
+    public State newState(Stack<Token> tokens) {
+        return new State(nextId++, tokens);
+    }
+
+    /**
+     * The number of states made so far, which is also the next id.
+     * @return The state count.
+     */
+    public int stateCount() {
+        return nextId;
+    }
+}
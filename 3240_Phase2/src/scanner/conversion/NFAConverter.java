@@ -1,27 +1,64 @@
 package scanner.conversion;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Set;
+import java.util.Queue;
 import java.util.Stack;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
+import scanner.automata.AlphabetPartition;
+import scanner.automata.BitParallelNFA;
 import scanner.automata.DFA;
 import scanner.automata.MapBasedDFA;
 import scanner.automata.NFA;
 import scanner.automata.State;
+import scanner.automata.StateFactory;
 import scanner.automata.Token;
 
 /**
  * A utility class used by NFAtoDFA to perform the conversion.
+ *
+ * The NFA is run through a BitParallelNFA, so every set of NFA states is a
+ * bitset and a move over a letter class is an OR of precomputed rows. DFA
+ * states are interned by their bitset and explored from a FIFO worklist.
+ *
+ * With a parallelism above one the worklist is expanded a whole level at a
+ * time on a fork/join pool: the moves of every state in the level and the
+ * tokens of every new state are computed concurrently, while DFA states are
+ * created on the calling thread in the same order the sequential worklist
+ * would create them. The resulting DFA is the same for any parallelism.
  */
 class NFAConverter {
+    // Ranges of work smaller than this are not split further
+    private static final int PARALLEL_GRAIN = 16;
+
     private NFA nfa;
     private MapBasedDFA dfa;
+    private int parallelism;
+    private int maxStates;
 
     public NFAConverter(NFA nfa) {
+        this(nfa, 1);
+    }
+
+    public NFAConverter(NFA nfa, int parallelism) {
+        this(nfa, parallelism, 0);
+    }
+
+    /**
+     * @param maxStates The most DFA states the conversion may create, or 0
+     * for no limit. {@link #dfa()} throws a StateLimitException past it.
+     */
+    public NFAConverter(NFA nfa, int parallelism, int maxStates) {
         this.nfa = nfa;
+        this.parallelism = Math.max(1, parallelism);
+        this.maxStates = maxStates;
     }
 
     public NFA nfa() {
@@ -34,125 +71,265 @@ class NFAConverter {
         }
         return dfa;
     }
-    private HashMap<Set<State>, State> nfaToDfaConversions;
-    private HashMap<State, Set<State>> dfaToNfaConversions;
-    private Set<State> fringeStates;
-    private State startState;
+    private BitParallelNFA simulator;
+    private AlphabetPartition partition;
+    private List<Stack<Token>> nfaTokens;
+    private HashMap<StateSet, State> nfaToDfaConversions;
+    private List<StateSet> dfaToNfaConversions;
+    private Queue<State> fringeStates;
+    private StateFactory stateFactory;
 
     private MapBasedDFA generateDFA() {
-        nfaToDfaConversions = new HashMap<Set<State>, State>();
-        dfaToNfaConversions = new HashMap<State, Set<State>>();
-        fringeStates = new HashSet<State>();
+        simulator = new BitParallelNFA(nfa);
+        partition = simulator.partition();
+        nfaTokens = new ArrayList<Stack<Token>>(simulator.stateCount());
+        for (int i = 0; i < simulator.stateCount(); i++) {
+            nfaTokens.add(simulator.state(i).getTokens());
+        }
 
-        startState = new State();
-        nfaToDfaConversions.put(nfa.startStates(), startState);
-        dfaToNfaConversions.put(startState, nfa.startStates());
-        fringeStates.add(startState);
+        nfaToDfaConversions = new HashMap<StateSet, State>();
+        dfaToNfaConversions = new ArrayList<StateSet>();
+        fringeStates = new ArrayDeque<State>();
+        stateFactory = new StateFactory();
+
+        State startState = stateFactory.newState();
+        intern(new StateSet(simulator.startSet()), startState);
 
         dfa = new MapBasedDFA(startState);
 
-        completeConversion();
+        if (parallelism > 1) {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                completeConversion(pool);
+            } finally {
+                pool.shutdown();
+            }
+        } else {
+            completeConversion();
+        }
 
         return dfa;
     }
 
+    private void intern(StateSet nfaStates, State dfaState) {
+        if (maxStates > 0 && dfaToNfaConversions.size() >= maxStates) {
+            throw new StateLimitException();
+        }
+        nfaToDfaConversions.put(nfaStates, dfaState);
+        dfaToNfaConversions.add(nfaStates);
+        fringeStates.add(dfaState);
+    }
+
     private void completeConversion() {
         // While there are still DFA states we have yet to fully explore
         while (!fringeStates.isEmpty()) {
-            State currState = fringeStates.toArray(new State[0])[0];
-            for (Character letter : nfa.alphabet()) {
-                if(letter == null) continue;
+            State currState = fringeStates.poll();
+            long[] nfaStates = dfaToNfaConversions.get(currState.id()).bits();
 
-                // Get all of the NFA states after the transition from the states associated
-                // with the current state
-                Set<State> nfaStates = dfaToNfaConversions.get(currState);
-                Set<State> transitionStates = nfa.transitions(nfaStates, letter);
+            // Letters in the same class lead to the same NFA states, so each class
+            // only has to be explored once.
+            for (int classId = 0; classId < partition.classCount(); classId++) {
+                long[] transitionBits = new long[simulator.wordCount()];
+                simulator.step(nfaStates, classId, transitionBits);
+                StateSet transitionStates = new StateSet(transitionBits);
 
                 // If the transition set has already been seen, just reuse the existing DFA
                 // state. Otherwise, create a new DFA state for that set, associate everything
-                // and add that state to the "to-be-searched-list".
-                if (nfaToDfaConversions.containsKey(transitionStates)) {
-                    State nextState = nfaToDfaConversions.get(transitionStates);
-                    dfa.addTransition(currState, letter, nextState);
-                } else {
-                    State nextState;
-                    if (transitionStates != null) {
-                        List<Stack<Token>> allTokens = new LinkedList<Stack<Token>>();
-                        for (State state : transitionStates) {
-                            allTokens.add(state.getTokens());
-                        }
-                        Stack<Token> mergedTokens = mergeTokens(allTokens);
-                        nextState = new State(mergedTokens);
-                        if (anyFinal(transitionStates))
-                            nextState.setFinal(true);
-                    } else {
-                        Stack<Token> tokens = new Stack<Token>();
-                        Token alphaToken = Token.anyCharacterToken();
-                        Token endAlphaToken = alphaToken.opposite();
-                        
-                        tokens.push(alphaToken);
-                        tokens.push(endAlphaToken);
-                        nextState = new State(tokens);
-                    }
-
-                    nfaToDfaConversions.put(transitionStates, nextState);
-                    dfaToNfaConversions.put(nextState, transitionStates);
-                    fringeStates.add(nextState);
-
-                    dfa.addTransition(currState, letter, nextState);
+                // and add that state to the worklist.
+                State nextState = nfaToDfaConversions.get(transitionStates);
+                if (nextState == null) {
+                    nextState = newDFAState(transitionStates);
+                    intern(transitionStates, nextState);
                 }
+                addClassTransition(currState, classId, nextState);
             }
-            fringeStates.remove(currState);
         }
     }
 
-    private boolean anyFinal(Set<State> transitionStates) {
-        for (State state : transitionStates) {
-            if (state.isFinal()) return true;
+    /**
+     * Expands the worklist one level at a time. Each level runs in three 
+     * steps: the moves of all its states are computed in parallel, the new 
+     * state sets are numbered in worklist order, and their tokens are merged 
+     * in parallel before the states are created in that order.
+     */
+    private void completeConversion(ForkJoinPool pool) {
+        final int classes = partition.classCount();
+        final ConcurrentHashMap<StateSet, StateSet> internTable = new ConcurrentHashMap<StateSet, StateSet>();
+        for (StateSet seen : nfaToDfaConversions.keySet()) {
+            internTable.put(seen, seen);
+        }
+
+        while (!fringeStates.isEmpty()) {
+            final State[] level = fringeStates.toArray(new State[0]);
+            fringeStates.clear();
+
+            // Every move of every state in the level
+            final StateSet[] moves = new StateSet[level.length * classes];
+            pool.invoke(new ParallelRange(0, moves.length, new IndexedTask() {
+                @Override
+                public void run(int index) {
+                    long[] nfaStates = dfaToNfaConversions.get(level[index / classes].id()).bits();
+                    long[] transitionBits = new long[simulator.wordCount()];
+                    simulator.step(nfaStates, index % classes, transitionBits);
+                    StateSet transitionStates = new StateSet(transitionBits);
+                    StateSet interned = internTable.putIfAbsent(transitionStates, transitionStates);
+                    moves[index] = interned == null ? transitionStates : interned;
+                }
+            }));
+
+            // New sets, in the order the sequential worklist would meet them
+            final List<StateSet> newSets = new ArrayList<StateSet>();
+            HashMap<StateSet, Boolean> pending = new HashMap<StateSet, Boolean>();
+            for (StateSet move : moves) {
+                if (!nfaToDfaConversions.containsKey(move) && pending.put(move, Boolean.TRUE) == null) {
+                    newSets.add(move);
+                }
+            }
+
+            final List<Stack<Token>> newTokens = new ArrayList<Stack<Token>>(Collections.<Stack<Token>>nCopies(newSets.size(), null));
+            pool.invoke(new ParallelRange(0, newSets.size(), new IndexedTask() {
+                @Override
+                public void run(int index) {
+                    newTokens.set(index, tokensFor(newSets.get(index)));
+                }
+            }));
+            for (int i = 0; i < newSets.size(); i++) {
+                State nextState = stateFactory.newState(newTokens.get(i));
+                nextState.setFinal(anyFinal(newSets.get(i)));
+                intern(newSets.get(i), nextState);
+            }
+
+            for (int i = 0; i < moves.length; i++) {
+                addClassTransition(level[i / classes], i % classes, nfaToDfaConversions.get(moves[i]));
+            }
+        }
+    }
+
+    private State newDFAState(StateSet transitionStates) {
+        State nextState = stateFactory.newState(tokensFor(transitionStates));
+        nextState.setFinal(anyFinal(transitionStates));
+        return nextState;
+    }
+
+    /**
+     * The tokens of the DFA state for a set of NFA states. The empty set is
+     * the dead state, which matches any character.
+     */
+    private Stack<Token> tokensFor(StateSet transitionStates) {
+        if (transitionStates.isEmpty()) {
+            Stack<Token> tokens = new Stack<Token>();
+            Token alphaToken = Token.anyCharacterToken();
+            Token endAlphaToken = alphaToken.opposite();
+
+            tokens.push(alphaToken);
+            tokens.push(endAlphaToken);
+            return tokens;
+        }
+
+        List<Stack<Token>> allTokens = new ArrayList<Stack<Token>>();
+        long[] bits = transitionStates.bits();
+        for (int w = 0; w < bits.length; w++) {
+            long word = bits[w];
+            while (word != 0) {
+                int index = (w << 6) + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+                allTokens.add(nfaTokens.get(index));
+            }
+        }
+        return mergeTokens(allTokens);
+    }
+
+    private boolean anyFinal(StateSet transitionStates) {
+        long[] bits = transitionStates.bits();
+        for (int w = 0; w < bits.length; w++) {
+            long word = bits[w];
+            while (word != 0) {
+                int index = (w << 6) + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+                if (simulator.state(index).isFinal()) return true;
+            }
         }
         return false;
     }
 
+    private void addClassTransition(State fromState, int classId, State toState) {
+        for (char letter : partition.members(classId)) {
+            dfa.addTransition(fromState, letter, toState);
+        }
+    }
+
+    /**
+     * Merges the token stacks of several NFA states. The tokens above the
+     * topmost start token of each stack come first, followed by the rest of
+     * each stack from the top down; every token is kept only once. The stacks
+     * are not modified.
+     */
     private Stack<Token> mergeTokens(List<Stack<Token>> allTokens) {
-        /*Stack<Token> ret = new Stack<Token>();
-        for(Stack<Token> tokens: allTokens) {
-            ret.addAll(tokens);
-        }
-        
-        return ret;*/
-        Stack<Token> workStack = new Stack<Token>();
-        
-        for(Stack<Token> tokens: allTokens) {
-            if(tokens.isEmpty()){
-            	continue;
-            }
-            Token currToken = tokens.peek();
-            while(!currToken.isStartToken() && !tokens.isEmpty()) {
-                currToken = tokens.pop();
-                if(!workStack.contains(currToken)) {
-                    workStack.push(currToken);
-                }
-                if(!tokens.isEmpty()){
-                currToken = tokens.peek();            
-                }
+        LinkedHashSet<Token> merged = new LinkedHashSet<Token>();
+        int[] remaining = new int[allTokens.size()];
+
+        for (int i = 0; i < allTokens.size(); i++) {
+            Stack<Token> tokens = allTokens.get(i);
+            int top = tokens.size() - 1;
+            while (top >= 0 && !tokens.get(top).isStartToken()) {
+                merged.add(tokens.get(top--));
             }
+            remaining[i] = top;
         }
-        
-        for(Stack<Token> tokens: allTokens) {
-            while(!tokens.isEmpty()) {
-                Token currToken = tokens.pop();
-                if(!workStack.contains(currToken)) {
-                    workStack.push(currToken);
-                }
+
+        for (int i = 0; i < allTokens.size(); i++) {
+            Stack<Token> tokens = allTokens.get(i);
+            for (int top = remaining[i]; top >= 0; top--) {
+                merged.add(tokens.get(top));
             }
         }
-        
+
+        Token[] ordered = merged.toArray(new Token[0]);
         Stack<Token> returnTokens = new Stack<Token>();
-        
-        while(!workStack.isEmpty()) {
-            returnTokens.push(workStack.pop());
+        for (int i = ordered.length - 1; i >= 0; i--) {
+            returnTokens.push(ordered[i]);
         }
-                
         return returnTokens;
     }
+
+    /**
+     * Thrown when a conversion would create more DFA states than allowed.
+     */
+    static class StateLimitException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+    }
+
+    private interface IndexedTask {
+        void run(int index);
+    }
+
+    /**
+     * Runs a task for every index in [from, to), splitting the range across
+     * the fork/join pool.
+     */
+    private static class ParallelRange extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final IndexedTask task;
+
+        ParallelRange(int from, int to, IndexedTask task) {
+            this.from = from;
+            this.to = to;
+            this.task = task;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PARALLEL_GRAIN) {
+                for (int i = from; i < to; i++) {
+                    task.run(i);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new ParallelRange(from, middle, task), new ParallelRange(middle, to, task));
+        }
+    }
 }
@@ -2,7 +2,6 @@ package scanner.conversion;
 
 import scanner.automata.DFA;
 import scanner.automata.NFA;
-import scanner.automata.State;
 
 /**
  * Accomplishes NFS to DFA conversion by calling NFAConverter.
@@ -10,8 +9,37 @@ import scanner.automata.State;
  */
 public class NFAtoDFA {
     public static DFA dfaFromNFA(NFA nfa) {
-        State.resetCount();
         NFAConverter converter = new NFAConverter(nfa);
         return converter.dfa();
     }
+
+    /**
+     * Converts on a fork/join pool of the given size. The result is the same
+     * DFA the sequential conversion builds, whatever the parallelism.
+     * @param nfa The NFA to convert.
+     * @param parallelism The number of worker threads; 1 converts on the 
+     * calling thread.
+     * @return The DFA.
+     */
+    public static DFA dfaFromNFA(NFA nfa, int parallelism) {
+        NFAConverter converter = new NFAConverter(nfa, parallelism);
+        return converter.dfa();
+    }
+
+    /**
+     * Converts unless the DFA turns out to have more than the given number of
+     * states, as it can for regexes such as (a|b)*a(a|b)(a|b)(a|b).
+     * @param nfa The NFA to convert.
+     * @param parallelism The number of worker threads.
+     * @param maxStates The most states the DFA may have.
+     * @return The DFA, or null if it has too many states.
+     */
+    public static DFA dfaFromNFA(NFA nfa, int parallelism, int maxStates) {
+        NFAConverter converter = new NFAConverter(nfa, parallelism, maxStates);
+        try {
+            return converter.dfa();
+        } catch (NFAConverter.StateLimitException ex) {
+            return null;
+        }
+    }
 }
@@ -0,0 +1,40 @@
+package scanner.conversion;
+
+import java.util.Arrays;
+
+/**
+ * A set of NFA states, stored as the bitset used by BitParallelNFA, that can
+ * be used as a hash key. The hash is computed once, so the bits must not be
+ * changed after the set is created.
+ */
+class StateSet {
+    private final long[] bits;
+    private final int hash;
+
+    StateSet(long[] bits) {
+        this.bits = bits;
+        this.hash = Arrays.hashCode(bits);
+    }
+
+    long[] bits() {
+        return bits;
+    }
+
+    boolean isEmpty() {
+        for (long word : bits) {
+            if (word != 0) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof StateSet && hash == ((StateSet) o).hash
+                && Arrays.equals(bits, ((StateSet) o).bits);
+    }
+}
@@ -0,0 +1,19 @@
+package scanner.generateNFA;
+
+import scanner.automata.State;
+
+/**
+ * A piece of an NFA under construction: a start state and an end state whose
+ * outgoing edges are still dangling. Fragments live inside one shared NFA and
+ * are combined by adding epsilon transitions between their ends and starts,
+ * so no transitions are ever copied.
+ */
+class Fragment {
+    final State start;
+    final State end;
+
+    Fragment(State start, State end) {
+        this.start = start;
+        this.end = end;
+    }
+}
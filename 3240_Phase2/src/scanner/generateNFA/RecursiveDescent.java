@@ -2,7 +2,6 @@ package scanner.generateNFA;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -11,8 +10,8 @@ import java.util.Stack;
 
 import scanner.automata.CharToken;
 import scanner.automata.MapBasedNFA;
-import scanner.automata.NFA;
 import scanner.automata.State;
+import scanner.automata.StateFactory;
 import scanner.automata.Token;
 import scanner.exceptions.SyntaxErrorException;
 import scanner.tools.RegexScanner;
@@ -45,6 +44,8 @@ public class RecursiveDescent {
     Map<String, CharToken> definedClasses;
     RegexScanner scanner;
     String nfaName;
+    MapBasedNFA nfa;
+    StateFactory states;
 
     /**
      * 
@@ -53,15 +54,33 @@ public class RecursiveDescent {
      * @param nfaName Friendly name for the NFA.
      */
     public RecursiveDescent(RegexScanner scanner, Map<String, CharToken> definedClasses, String nfaName) {
+        this(scanner, definedClasses, nfaName, new StateFactory());
+    }
+
+    private RecursiveDescent(RegexScanner scanner, Map<String, CharToken> definedClasses, String nfaName, StateFactory states) {
+        this(scanner, definedClasses, nfaName, new MapBasedNFA(states.newState()), states);
+    }
+
+    /**
+     * 
+     * @param scanner A regular expression scanner, capable of dispensing tokens.
+     * @param definedClasses A Map of defined Character Classes.
+     * @param nfaName Friendly name for the NFA.
+     * @param nfa The NFA to build into. The regex is joined to its start state
+     * by an epsilon transition, so several regexes can share one NFA.
+     * @param states The factory that made the NFA's start state. The new
+     * states come from it too, so the states of the NFA are numbered densely.
+     */
+    public RecursiveDescent(RegexScanner scanner, Map<String, CharToken> definedClasses, String nfaName, MapBasedNFA nfa, StateFactory states) {
         reCharList = Arrays.asList(RE_CHAR);
         clsCharList = Arrays.asList(CLS_CHAR);
 
-        //JW TODO replace with real defined classes
         this.definedClasses = definedClasses;
         definedClassesNames = new ArrayList<String>(this.definedClasses.keySet());
-        //JW TODO replace with real scanner
         this.scanner = scanner;
         this.nfaName = nfaName;
+        this.nfa = nfa;
+        this.states = states;
     }
 
     /**
@@ -71,25 +90,21 @@ public class RecursiveDescent {
      */
     public RecursiveDescentInterState regex() throws SyntaxErrorException {
         RecursiveDescentInterState rexpState = rexp();
-        MapBasedNFA nfa = (MapBasedNFA) rexpState.getCurrentNFA();
+        Fragment fragment = rexpState.getFragment();
         Token startToken = new Token(nfaName, true);
         Token endToken = new Token(nfaName, false);
 
-        State startState = nfa.startState();
-        startState.addToken(startToken);
+        fragment.start.addToken(startToken);
         
         Stack<Token> endStack = new Stack<Token>();
         endStack.push(endToken);
         
-        State nfaFinalState = new State(endStack);
+        State nfaFinalState = states.newState(endStack);
         nfaFinalState.setFinal(true);
-        MapBasedNFA endNFA = new MapBasedNFA(nfaFinalState);
-        
-        RecursiveDescentInterState endInter = new RecursiveDescentInterState("", endNFA);
-        
-        RecursiveDescentInterState finalNFA = concaInterStates(rexpState, endInter);
+        nfa.addTransition(fragment.end, null, nfaFinalState);
+        nfa.addTransition(nfa.startState(), null, fragment.start);
           
-        return finalNFA;
+        return new RecursiveDescentInterState(null, nfa, new Fragment(fragment.start, nfaFinalState));
     }
 
     private RecursiveDescentInterState rexp() throws SyntaxErrorException {
@@ -108,7 +123,7 @@ public class RecursiveDescent {
             scanner.matchToken(token);
             RecursiveDescentInterState rexp1State = rexp1();
             RecursiveDescentInterState rexpPrimeState = rexpPrime();
-            RecursiveDescentInterState interState = concaInterStates(rexp1State, rexpPrimeState);
+            RecursiveDescentInterState interState = unionStates(rexp1State, rexpPrimeState);
             return interState;
         } else {
             return null;
@@ -147,71 +162,28 @@ public class RecursiveDescent {
             RecursiveDescentInterState rexp2TailState = rexp2Tail();
 
             if (rexp2TailState == null) {
-                String newRegexString = "(" + rexpState.getCurrentRegex() + ")";
-                RecursiveDescentInterState interState = new RecursiveDescentInterState(newRegexString, rexpState.getCurrentNFA());
-                return interState;
+                return new RecursiveDescentInterState(null, nfa, rexpState.getFragment());
             } else if (rexp2TailState.getCurrentRegex().equals("*")) {
-                MapBasedNFA nfa = (MapBasedNFA) rexpState.getCurrentNFA();
-                State startState = nfa.startState();
-                startState.setFinal(true);
-                Set<State> finalStates = nfa.finalStates();
-                for (State fState : finalStates) {
-                    nfa.addTransition(fState, null, startState);
-                }
-                String newRegex = "(" + rexpState.getCurrentRegex() + ")*";
-                RecursiveDescentInterState interState = new RecursiveDescentInterState(newRegex, nfa);
-                return interState;
-
+                return new RecursiveDescentInterState(null, nfa, repeat(rexpState.getFragment(), true));
             } else {
-                MapBasedNFA nfa = (MapBasedNFA) rexpState.getCurrentNFA();
-                State startState = nfa.startState();
-                Set<State> finalStates = nfa.finalStates();
-                for (State fState : finalStates) {
-                    nfa.addTransition(fState, null, startState);
-                }
-                String newRegex = "(" + rexpState.getCurrentRegex() + ")+";
-                RecursiveDescentInterState interState = new RecursiveDescentInterState(newRegex, nfa);
-                return interState;
-
+                return new RecursiveDescentInterState(null, nfa, repeat(rexpState.getFragment(), false));
             }
         } else if (reCharList.contains(token.getValue())) {
             scanner.matchToken(token);
 
             RecursiveDescentInterState rexp2TailState = rexp2Tail();
 
-            Token start = new Token(nfaName, true);
-            //new Token("RE_CHAR", true);
-            Token end = new Token(nfaName, false);
-            //new Token("RE_CHAR", false);
-            Stack<Token> stack = new Stack<Token>();
-            stack.push(start);
-            stack.push(end);
-
-
-            State startState = new State();
-            MapBasedNFA nfa = new MapBasedNFA(startState);
-            State finalState = new State(stack);
-            finalState.setFinal(true);
             Character c = getCharFromString(token.getValue());
+            Set<Character> chars = new HashSet<Character>();
+            chars.add(c);
+            Fragment charFragment = buildChars(chars, nfaName);
 
             if (rexp2TailState == null) {
-                nfa.addTransition(startState, c, finalState);
-                String newRegex = Character.toString(c);
-                RecursiveDescentInterState interState = new RecursiveDescentInterState(newRegex, nfa);
-                return interState;
+                return new RecursiveDescentInterState(null, nfa, charFragment);
             } else if (rexp2TailState.getCurrentRegex().equals("*")) {
-                startState.setFinal(true);
-                nfa.addTransition(startState, c, finalState);
-                nfa.addTransition(finalState, null, startState);
-                String newRegex = Character.toString(c) + "*";
-                RecursiveDescentInterState interState = new RecursiveDescentInterState(newRegex, nfa);
-                return interState;
+                return new RecursiveDescentInterState(null, nfa, repeat(charFragment, true));
             } else {
-                nfa.addTransition(startState, c, finalState);
-                nfa.addTransition(finalState, null, startState);
-                String newRegex = Character.toString(c) + "+";
-                RecursiveDescentInterState interState = new RecursiveDescentInterState(newRegex, nfa);
-                return interState;
+                return new RecursiveDescentInterState(null, nfa, repeat(charFragment, false));
             }
         } else {
             return rexp3();
@@ -238,14 +210,9 @@ public class RecursiveDescent {
     }
 
     private RecursiveDescentInterState rexp3() throws SyntaxErrorException {
-        try {
-            return charClass();
-        } catch (SyntaxErrorException e) {
-            //System.out.println("<char-class> failed at <rexp3>\nreturning null");
-            throw new SyntaxErrorException();
-            //return null;
-        }
-
+        RecursiveDescentInterState charClassState = charClass();
+        Fragment fragment = buildChars(charClassState.getChars(), charClassState.getTokenName());
+        return new RecursiveDescentInterState(null, nfa, fragment);
     }
 
     private RecursiveDescentInterState charClass() throws SyntaxErrorException {
@@ -271,59 +238,17 @@ public class RecursiveDescent {
                 }
             }
 
-            Token start = new Token(nfaName, true);
-            		//new Token("DOT", true);
-            Token end = new Token(nfaName, false);
-            //new Token("DOT", false);
-            Stack<Token> stack = new Stack<Token>();
-            stack.push(start);
-            stack.push(end);
-
-            State startState = new State();
-            MapBasedNFA nfa = new MapBasedNFA(startState);
-            State finalState = new State(stack);
-            finalState.setFinal(true);
-
-            for (Character c : allChars) {
-                nfa.addTransition(startState, c, finalState);
-            }
-            String newRegexString = ".";
-
-            RecursiveDescentInterState interState = new RecursiveDescentInterState(newRegexString, nfa);
-
-            return interState;
+            return new RecursiveDescentInterState(".", null, allChars, nfaName);
 
         } else if (token.equals(new Token("[", false))) {
             scanner.matchToken(token);
             RecursiveDescentInterState charClass1State = charClass1();
-            String newRegexString = "[" + charClass1State.getCurrentRegex();
-            RecursiveDescentInterState interState = new RecursiveDescentInterState(newRegexString, charClass1State.getCurrentNFA());
-            return interState;
+            return new RecursiveDescentInterState(null, null, charClass1State.getChars(), charClass1State.getTokenName());
         } else if (definedClassesNames.contains(token.getValue())) {
             scanner.matchToken(token);
 
-
-            Token start = new Token(nfaName, true);
-            		//new Token(token.getValue(), true);
-            Token end = new Token(nfaName, false);
-            		//new Token(token.getValue(), false);
-            Stack<Token> stack = new Stack<Token>();
-            stack.push(start);
-            stack.push(end);
-
-            State startState = new State();
-            MapBasedNFA nfa = new MapBasedNFA(startState);
-            State finalState = new State(stack);
-            finalState.setFinal(true);
-
-            Set<Character> transitions = definedClasses.get(token.getValue()).chars;
-
-            for (Character c : transitions) {
-                nfa.addTransition(startState, c, finalState);
-            }
-
-            RecursiveDescentInterState interState = new RecursiveDescentInterState(token.getValue(), nfa);
-            return interState;
+            Set<Character> chars = new HashSet<Character>(definedClasses.get(token.getValue()).chars);
+            return new RecursiveDescentInterState(token.getValue(), null, chars, nfaName);
 
         } else {
             throw new SyntaxErrorException();
@@ -335,7 +260,6 @@ public class RecursiveDescent {
             RecursiveDescentInterState charSetListState = charSetList();
             return charSetListState;
         } catch (SyntaxErrorException e) {
-            System.out.println("<char-set-list> failed at <char-set>\ntrying to return <exclude-set>");
             RecursiveDescentInterState excludeSetState = excludeSet();
             return excludeSetState;
         }
@@ -348,8 +272,9 @@ public class RecursiveDescent {
         try {
             RecursiveDescentInterState charSetState = charSet();
             RecursiveDescentInterState charSetListState = charSetList();
-            RecursiveDescentInterState newInterState = concaInterStates(charSetState, charSetListState);
-            return newInterState;
+            Set<Character> chars = new HashSet<Character>(charSetState.getChars());
+            chars.addAll(charSetListState.getChars());
+            return new RecursiveDescentInterState(null, null, chars, nfaName);
         } catch (SyntaxErrorException e) {
             Token token = scanner.peek();
             if (token == null) {
@@ -357,9 +282,7 @@ public class RecursiveDescent {
             }
             if (token.equals(new Token("]", false))) {
                 scanner.matchToken(token);
-                String newRegexString = "]";
-                RecursiveDescentInterState interState = new RecursiveDescentInterState(newRegexString, null);
-                return interState;
+                return new RecursiveDescentInterState(null, null, new HashSet<Character>(), nfaName);
             } else {
                 throw new SyntaxErrorException();
             }
@@ -375,59 +298,24 @@ public class RecursiveDescent {
         if (clsCharList.contains(token.getValue())) {
             scanner.matchToken(token);
             RecursiveDescentInterState charSetTailState = charSetTail();
+            Set<Character> chars = new HashSet<Character>();
             if (charSetTailState == null) {
-                Character c = getCharFromString(token.getValue());
-
-
-                Token start = new Token(nfaName, true);
-                		//new Token("CLS_CHAR", true);
-                Token end = new Token(nfaName, false);
-                		//new Token("CLS_CHAR", false);
-                Stack<Token> stack = new Stack<Token>();
-                stack.push(start);
-                stack.push(end);
-
-
-                State startState = new State();
-                MapBasedNFA nfa = new MapBasedNFA(startState);
-                State finalState = new State(stack);
-                finalState.setFinal(true);
-
-                nfa.addTransition(startState, c, finalState);
+                chars.add(getCharFromString(token.getValue()));
 
                 String newRegexString = token.getValue();
-                RecursiveDescentInterState interState = new RecursiveDescentInterState(newRegexString, nfa);
-                return interState;
+                return new RecursiveDescentInterState(newRegexString, null, chars, nfaName);
             } else {
 
                 int startIndex = clsCharList.indexOf(token.getValue());
-                Character endChar = (Character) charSetTailState.getCurrentNFA().alphabet().toArray()[0];
+                Character endChar = charSetTailState.getChars().iterator().next();
                 int endIndex = clsCharList.indexOf(Character.toString(endChar)) + 1;
-                List<Character> chars = new ArrayList<Character>();
                 for (int i = startIndex; i < endIndex; i++) {
                     Character c = getCharFromString(clsCharList.get(i));
                     chars.add(c);
                 }
 
-                Token start = new Token(nfaName, true);
-                		//Token("CLS_CHAR", true);
-                Token end = new Token(nfaName, false);
-                		//new Token("CLS_CHAR", false);
-                Stack<Token> stack = new Stack<Token>();
-                stack.push(start);
-                stack.push(end);
-
-                State startState = new State();
-                MapBasedNFA nfa = new MapBasedNFA(startState);
-                State finalState = new State(stack);
-                finalState.setFinal(true);
-                for (Character c : chars) {
-                    nfa.addTransition(startState, c, finalState);
-                }
-
                 String newRegexString = token.getValue() + charSetTailState.getCurrentRegex();
-                RecursiveDescentInterState interState = new RecursiveDescentInterState(newRegexString, nfa);
-                return interState;
+                return new RecursiveDescentInterState(newRegexString, null, chars, nfaName);
 
             }
 
@@ -448,25 +336,12 @@ public class RecursiveDescent {
             if (clsCharList.contains(token1.getValue())) {
                 scanner.matchToken(token1);
 
-                Token start = new Token(nfaName, true);
-                		//Token("CLS_CHAR", true);
-                Token end = new Token(nfaName, false);
-                		//Token("CLS_CHAR", false);
-                Stack<Token> stack = new Stack<Token>();
-                stack.push(start);
-                stack.push(end);
-
                 Character c = getCharFromString(token1.getValue());
-                State startState = new State();
-                MapBasedNFA nfa = new MapBasedNFA(startState);
-                State finalState = new State(stack);
-                finalState.setFinal(true);
-
-                nfa.addTransition(startState, c, finalState);
+                Set<Character> chars = new HashSet<Character>();
+                chars.add(c);
 
                 String newRegexString = "-" + Character.toString(c);
-                RecursiveDescentInterState interState = new RecursiveDescentInterState(newRegexString, nfa);
-                return interState;
+                return new RecursiveDescentInterState(newRegexString, null, chars, nfaName);
             } else {
                 throw new SyntaxErrorException();
             }
@@ -480,46 +355,21 @@ public class RecursiveDescent {
         RecursiveDescentInterState charSetSate = charSet();
         scanner.matchToken(new Token("IN", false));
 
-        Set<Character> toRemoveChars = charSetSate.getCurrentNFA().alphabet();
+        Set<Character> toRemoveChars = charSetSate.getChars();
         RecursiveDescentInterState exSetTailState = excludetSetTail();
-        Set<Character> allChars = exSetTailState.getCurrentNFA().alphabet();
-
-
-        Token start;
-        Token end;
-        Stack<Token> stack = new Stack<Token>();
-
-
+        Set<Character> allChars = new HashSet<Character>(exSetTailState.getChars());
 
+        String tokenName;
         String allCharRegex = exSetTailState.getCurrentRegex();
         if (allCharRegex.contains("[")) {
-            start = new Token(nfaName, true);
-            		//Token("CLS_CHAR", true);
-            end = new Token(nfaName, false);
-            		//Token("CLS_CHAR", false);
+            tokenName = nfaName;
         } else {
-            start = new Token(allCharRegex, true);
-            end = new Token(allCharRegex, false);
+            tokenName = allCharRegex;
         }
 
-        stack.push(start);
-        stack.push(end);
+        allChars.removeAll(toRemoveChars);
 
-        for (Character c : toRemoveChars) {
-            allChars.remove(c);
-        }
-
-        State startState = new State();
-        MapBasedNFA nfa = new MapBasedNFA(startState);
-        State finalState = new State(stack);
-        finalState.setFinal(true);
-
-        for (Character c : allChars) {
-            nfa.addTransition(startState, c, finalState);
-        }
-        String newRegexString = "^" + charSetSate.getCurrentRegex() + "IN" + exSetTailState.getCurrentRegex();
-        RecursiveDescentInterState interState = new RecursiveDescentInterState(newRegexString, nfa);
-        return interState;
+        return new RecursiveDescentInterState(null, null, allChars, tokenName);
     }
 
     private RecursiveDescentInterState excludetSetTail() throws SyntaxErrorException {
@@ -532,211 +382,87 @@ public class RecursiveDescent {
             RecursiveDescentInterState charSetSate = charSet();
             scanner.matchToken(new Token("]", false));
 
-            /*State startState = new State();
-            MapBasedNFA nfa = new MapBasedNFA(startState);
-            State finalState = new State();
-            finalState.setFinal(true);
-            
-            NFA charSetNFA = charSetSate.getCurrentNFA();
-            
-            Set<Character> chars = charSetNFA.alphabet();
-            
-            for(Character c : chars){
-            nfa.addTransition(startState, c, finalState);
-            }*/
-
-
-            NFA nfa = charSetSate.getCurrentNFA();
             String newRegexString = "[" + charSetSate.getCurrentRegex() + "]";
-            RecursiveDescentInterState interState = new RecursiveDescentInterState(newRegexString, nfa);
-            return interState;
+            return new RecursiveDescentInterState(newRegexString, null, charSetSate.getChars(), nfaName);
 
         } else if (definedClassesNames.contains(token.getValue())) {
             scanner.matchToken(token);
 
-            Token start = new Token(nfaName, true);
-            		//Token(token.getValue(), true);
-            Token end = new Token(nfaName, false);
-            		//Token(token.getValue(), false);
-            Stack<Token> stack = new Stack<Token>();
-            stack.push(start);
-            stack.push(end);
+            Set<Character> chars = new HashSet<Character>(definedClasses.get(token.getValue()).chars);
+            return new RecursiveDescentInterState(token.getValue(), null, chars, nfaName);
+        } else {
+            throw new SyntaxErrorException();
+        }
 
-            State startState = new State();
-            MapBasedNFA nfa = new MapBasedNFA(startState);
-            State finalState = new State(stack);
-            finalState.setFinal(true);
+    }
 
-            Set<Character> transitions = definedClasses.get(token.getValue()).chars;
+    /**
+     * Builds a fragment matching any single character of a set. The end state 
+     * carries the start and end tokens of the given name.
+     */
+    private Fragment buildChars(Set<Character> chars, String tokenName) {
+        Stack<Token> stack = new Stack<Token>();
+        stack.push(new Token(tokenName, true));
+        stack.push(new Token(tokenName, false));
 
-            for (Character c : transitions) {
-                nfa.addTransition(startState, c, finalState);
-            }
-            RecursiveDescentInterState interState = new RecursiveDescentInterState(token.getValue(), nfa);
-            return interState;
-        } else {
-            throw new SyntaxErrorException();
+        State startState = states.newState();
+        State endState = states.newState(stack);
+        for (Character c : chars) {
+            nfa.addTransition(startState, c, endState);
         }
+        return new Fragment(startState, endState);
+    }
 
+    /**
+     * Wraps a fragment in a loop: fragment* when empty is allowed, fragment+
+     * otherwise. The fragment gets a new start and end so that the loop cannot
+     * be entered or left through the states around it.
+     */
+    private Fragment repeat(Fragment fragment, boolean allowEmpty) {
+        State startState = states.newState();
+        State endState = states.newState();
+        nfa.addTransition(startState, null, fragment.start);
+        nfa.addTransition(fragment.end, null, fragment.start);
+        nfa.addTransition(fragment.end, null, endState);
+        if (allowEmpty) {
+            nfa.addTransition(startState, null, endState);
+        }
+        return new Fragment(startState, endState);
     }
 
     private RecursiveDescentInterState concaInterStates(RecursiveDescentInterState state1, RecursiveDescentInterState state2) {
-
         if (state1 == null) {
             return state2;
         }
         if (state2 == null) {
             return state1;
         }
-        MapBasedNFA leftNFA = (MapBasedNFA) state1.getCurrentNFA();
-        MapBasedNFA rightNFA = (MapBasedNFA) state2.getCurrentNFA();
-        if (leftNFA == null) {
-            String newRegexString = state1.getCurrentRegex() + state2.getCurrentRegex();
-            RecursiveDescentInterState interState = new RecursiveDescentInterState(newRegexString, state2.getCurrentNFA());
-            System.out.println(newRegexString);
-            return interState;
-        }
-        if (rightNFA == null) {
-            String newRegexString = state1.getCurrentRegex() + state2.getCurrentRegex();
-            RecursiveDescentInterState interState = new RecursiveDescentInterState(newRegexString, state1.getCurrentNFA());
-            System.out.println(newRegexString);
-            return interState;
-        }
-
-
-
-
-
-        /*
-        // start debugging printout
-        System.out.println(state1.getCurrentRegex());
-        HashMap<State, HashMap<Character, HashSet<State>>> allTransitions = ((MapBasedNFA)(state1.getCurrentNFA())).getTransitions();
-        Set<State> allStates = state1.getCurrentNFA().allStates();
-        for(State currState : allStates){
-        HashMap<Character, HashSet<State>> currentTransitions = allTransitions.get(currState);
-        HashSet<Character> charSet = new HashSet<Character>(currentTransitions.keySet());
-        for(Character c : charSet){
-        HashSet<State> toStates = currentTransitions.get(c);
-        for(State toState : toStates){
-        String transitionChar;
-        if(c==null){
-        transitionChar = "null";
-        }
-        else {
-        transitionChar = Character.toString(c);
-        }
-        System.out.println(currState.getName()+"---" + transitionChar+"--->"+toState.getName());
-        }
-        }			
-        }		
-        System.out.println("Final States:");
-        Set<State> finalStates = ((MapBasedNFA)(state1.getCurrentNFA())).finalStates();
-        for(State s: finalStates){
-        System.out.println(s.getName());
-        }
-        
-        
-        System.out.println(state2.getCurrentRegex());
-        allTransitions = ((MapBasedNFA)(state2.getCurrentNFA())).getTransitions();
-        allStates = state2.getCurrentNFA().allStates();
-        for(State currState : allStates){
-        HashMap<Character, HashSet<State>> currentTransitions = allTransitions.get(currState);
-        HashSet<Character> charSet = new HashSet<Character>(currentTransitions.keySet());
-        for(Character c : charSet){
-        HashSet<State> toStates = currentTransitions.get(c);
-        for(State toState : toStates){
-        String transitionChar;
-        if(c==null){
-        transitionChar = "null";
-        }
-        else {
-        transitionChar = Character.toString(c);
-        }
-        System.out.println(currState.getName()+"---" + transitionChar+"--->"+toState.getName());
-        }
-        }			
-        }		
-        System.out.println("Final States:");
-        finalStates = ((MapBasedNFA)(state2.getCurrentNFA())).finalStates();
-        for(State s: finalStates){
-        System.out.println(s.getName());
-        }
-        // end debugging printout
-         */
 
+        Fragment left = state1.getFragment();
+        Fragment right = state2.getFragment();
+        nfa.addTransition(left.end, null, right.start);
 
-
-
-
-        //Set<State> newLeftFinals = new HashSet<State>();
-
-
-        Set<State> leftFinal = leftNFA.finalStates();
-        State rightStartState = rightNFA.startState();
-        leftNFA.setFinalStates(new HashSet<State>());
-        for (State finalState : leftFinal) {
-            finalState.setFinal(false);
-            leftNFA.addTransition(finalState, null, rightStartState);
-        }
-        //appending rightNFA to leftNFA
-        HashMap<State, HashMap<Character, HashSet<State>>> allTransitions = rightNFA.getTransitions();
-        Set<State> allStates = rightNFA.allStates();
-        for (State currState : allStates) {
-            HashMap<Character, HashSet<State>> currentTransitions = allTransitions.get(currState);
-            HashSet<Character> charSet = new HashSet<Character>(currentTransitions.keySet());
-            for (Character c : charSet) {
-                HashSet<State> toStates = currentTransitions.get(c);
-                for (State toState : toStates) {
-                    leftNFA.addTransition(currState, c, toState);
-                }
-            }
-        }
-        String newRegexString = state1.getCurrentRegex() + state2.getCurrentRegex();
-        //System.out.println(newRegexString);
-        RecursiveDescentInterState interState = new RecursiveDescentInterState(newRegexString, leftNFA);
-        return interState;
+        return new RecursiveDescentInterState(null, nfa, new Fragment(left.start, right.end));
     }
 
     private RecursiveDescentInterState unionStates(RecursiveDescentInterState state1, RecursiveDescentInterState state2) {
-
         if (state1 == null) {
             return state2;
         }
         if (state2 == null) {
             return state1;
         }
-        MapBasedNFA leftNFA = (MapBasedNFA) state1.getCurrentNFA();
-        MapBasedNFA rightNFA = (MapBasedNFA) state2.getCurrentNFA();
-        if (leftNFA == null) {
-            String newRegexString = state1.getCurrentRegex() + state2.getCurrentRegex();
-            RecursiveDescentInterState interState = new RecursiveDescentInterState(newRegexString, state2.getCurrentNFA());
-            return interState;
-        }
-        if (rightNFA == null) {
-            String newRegexString = state1.getCurrentRegex() + state2.getCurrentRegex();
-            RecursiveDescentInterState interState = new RecursiveDescentInterState(newRegexString, state1.getCurrentNFA());
-            return interState;
-        }
 
-        State leftStartState = leftNFA.startState();
-        State rigthStartState = rightNFA.startState();
-        leftNFA.addTransition(leftStartState, null, rigthStartState);
-
-        HashMap<State, HashMap<Character, HashSet<State>>> allTransitions = rightNFA.getTransitions();
-        Set<State> allStates = rightNFA.allStates();
-        for (State currState : allStates) {
-            HashMap<Character, HashSet<State>> currentTransitions = allTransitions.get(currState);
-            HashSet<Character> charSet = new HashSet<Character>(currentTransitions.keySet());
-            for (Character c : charSet) {
-                HashSet<State> toStates = currentTransitions.get(c);
-                for (State toState : toStates) {
-                    leftNFA.addTransition(currState, c, toState);
-                }
-            }
-        }
-        String newRegexString = state1.getCurrentRegex() + "|" + state2.getCurrentRegex();
-        RecursiveDescentInterState interState = new RecursiveDescentInterState(newRegexString, leftNFA);
-        return interState;
+        Fragment left = state1.getFragment();
+        Fragment right = state2.getFragment();
+        State startState = states.newState();
+        State endState = states.newState();
+        nfa.addTransition(startState, null, left.start);
+        nfa.addTransition(startState, null, right.start);
+        nfa.addTransition(left.end, null, endState);
+        nfa.addTransition(right.end, null, endState);
+
+        return new RecursiveDescentInterState(null, nfa, new Fragment(startState, endState));
     }
 
     private Character getCharFromString(String charString) {
@@ -28,7 +28,7 @@ public class SpecFileScanner {
     private Map<String, String> charClassDefs, identifiers;
     private TreeMap<String, CharToken> charClasses;
     private Map<String, LinkedList<Token>> identifierDefs;
-    private Scanner jScanner, jScanner2;
+    private Scanner jScanner;
 
     /**
      * A tree map of all defined character classes.
@@ -95,8 +95,6 @@ public class SpecFileScanner {
                 }
             }
             charClassDefs = new TreeMap<String, String>();
-            String name;
-            StringBuilder def = new StringBuilder();
             while (jScanner.hasNextLine()) {
                 line++;
                 curr = jScanner.nextLine();
@@ -108,18 +106,11 @@ public class SpecFileScanner {
                 if (curr.charAt(0) != '$' || curr.charAt(0) == '%') {
                     break;
                 }
-                jScanner2 = new Scanner(curr);
-                name = jScanner2.next();
-                while (jScanner2.hasNext()) {
-                    def.append(jScanner2.next());
-                }
-                charClassDefs.put(name, def.toString());
-                def = new StringBuilder();
+                String[] definition = splitDefinition(curr);
+                charClassDefs.put(definition[0], definition[1]);
             }
             identifiers = new TreeMap<String, String>();
-            StringBuilder regex;
             while (jScanner.hasNextLine()) {
-                regex = new StringBuilder();
                 line++;
                 curr = jScanner.nextLine();
                // System.out.println(curr);
@@ -130,12 +121,8 @@ public class SpecFileScanner {
                 if (curr.charAt(0) != '$') {
                     throw new SyntaxErrorException("LOOK HERE:"+curr);
                 }
-                jScanner2 = new Scanner(curr);
-                name = jScanner2.next();
-                while (jScanner2.hasNext()) {
-                    regex.append(jScanner2.next());
-                }
-                identifiers.put(name, regex.toString());
+                String[] definition = splitDefinition(curr);
+                identifiers.put(definition[0], definition[1]);
             }
             /* At this point, all of the Character class definitions and the 
              * identifiers are <String, String> entries in Hashmaps
@@ -147,6 +134,28 @@ public class SpecFileScanner {
         }
     }
 
+    /**
+     * Splits a definition line into its name and its body. Whitespace in the body is dropped unless it is escaped with a backslash, so that <code>\ </code> still stands for a space.
+     * @param line A line starting with the definition name.
+     * @return An array holding the name and the body.
+     */
+    private static String[] splitDefinition(String line) {
+        int nameEnd = 0;
+        while (nameEnd < line.length() && !Character.isWhitespace(line.charAt(nameEnd))) {
+            nameEnd++;
+        }
+        StringBuilder body = new StringBuilder();
+        for (int i = nameEnd; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '\\' && i + 1 < line.length()) {
+                body.append(c).append(line.charAt(++i));
+            } else if (!Character.isWhitespace(c)) {
+                body.append(c);
+            }
+        }
+        return new String[]{line.substring(0, nameEnd), body.toString()};
+    }
+
     /**
      * Parser-lexer combination procedure which processes the character class section of the input specification file.
      * @throws SyntaxErrorException 
@@ -167,6 +176,9 @@ public class SpecFileScanner {
                     throw new SyntaxErrorException();
                 }
             }
+            if (exclusion) {
+                i++;
+            }
             while (i + 1 < chars.length && chars[i] != ']') {
                 // If ecape character, just replace by next character and continue as if single.
                 tmp = chars[i] == '\\' ? chars[++i] : chars[i];
@@ -237,8 +249,9 @@ public class SpecFileScanner {
                         while (!tokenBuffer.isEmpty()) {
                             temp.append(tokenBuffer.pollLast());
                         }
-                        if(!temp.toString().trim().equals("\\")){
-                        	tokens.add(new Token(temp.toString().trim()));
+                        /* A trailing backslash only escapes the padding space */
+                        if (!curr.isEmpty()) {
+                            tokens.add(new Token(temp.toString()));
                         }
                         break;
                     case '$':
@@ -259,6 +272,9 @@ public class SpecFileScanner {
                                 temp.append(tokenBuffer.pollLast());
                             }
                             tokens.add(new Token(temp.toString().trim()));
+                        } else {
+                            /* Padding space, not part of any token */
+                            tokenBuffer.clear();
                         }
                 }
             }
@@ -0,0 +1,328 @@
+package walker.compiled;
+
+import ast.AbstractSyntaxTree;
+import ast.ExpressionNode;
+import ast.Node;
+import ast.StatementNode;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import walker.compiled.Expressions.Binop;
+import walker.compiled.Expressions.Failure;
+import walker.compiled.Expressions.Id;
+import walker.compiled.Expressions.MaxFreq;
+import walker.compiled.Expressions.Size;
+import walker.compiled.Expressions.Term;
+import walker.compiled.Statements.Assign;
+import walker.compiled.Statements.Print;
+import walker.compiled.Statements.Replace;
+import walker.exceptions.ASTExecutionException;
+import walker.exceptions.ExpressionArgumentException;
+import walker.exceptions.IncorrectNodeTypeException;
+import walker.exceptions.InvalidExpressionTypeException;
+import walker.exceptions.InvalidStatementTypeException;
+import walker.exceptions.NonExecutableNodeException;
+import walker.exceptions.StatementArgumentException;
+import walker.expressions.BinopExpression;
+import walker.expressions.BinopExpression.BinopType;
+import walker.expressions.Exp3Expression;
+import walker.expressions.ExpTail1Expression;
+import walker.expressions.ExpTail2Expression;
+import walker.expressions.IDStatement1Expression;
+import walker.expressions.IdExpression;
+import walker.expressions.MaxFreqExpression;
+import walker.expressions.ParenExpression;
+import walker.expressions.SizeExpression;
+import walker.expressions.TermExpression;
+import walker.statements.AssignStatement;
+import walker.statements.PrintStatement;
+import walker.statements.RecursiveReplaceStatement;
+import walker.statements.ReplaceStatement;
+
+/**
+ * Compiles an {@link AbstractSyntaxTree} into a {@link CompiledScript}.
+ *
+ * The {@link walker.ASTWalker} looks up the executor of every node by its type
+ * and has the executor check and unquote the node's value each time the node
+ * is run. The compiler does that once: every node becomes an object that
+ * already knows what to do, holding its sub-expressions, its IDs, and its
+ * regex and file names without quotes.
+ *
+ * A compiled script behaves like walking the tree. A node the walker would
+ * reject is compiled into one that throws the walker's exception when it is
+ * reached, so the statements in front of it still run.
+ */
+public class ASTCompiler {
+    private ASTCompiler() {
+    }
+
+    /**
+     * Compiles a tree.
+     * @param tree The tree
+     * @return The compiled script.
+     */
+    public static CompiledScript compile(AbstractSyntaxTree tree) {
+        List<CompiledStatement> statements = new ArrayList<CompiledStatement>();
+        for (Node node = tree.getHead(); node != null; node = node.nextNode()) {
+            CompiledStatement statement = compileStatement(node);
+            statements.add(statement);
+            if (statement instanceof Failure) {
+                break;
+            }
+        }
+        return new CompiledScript(statements.toArray(new CompiledStatement[statements.size()]));
+    }
+
+    private static CompiledStatement compileStatement(Node node) {
+        if (!(node instanceof StatementNode)) { //expression nodes can't be executed
+            return new Failure(new NonExecutableNodeException(node));
+        }
+        StatementNode statement = (StatementNode) node;
+        String type = statement.type();
+
+        if (AssignStatement.type().equals(type)) {
+            return compileAssign(statement);
+        } else if (ReplaceStatement.type().equals(type)) {
+            return compileReplace(statement, false);
+        } else if (RecursiveReplaceStatement.type().equals(type)) {
+            return compileReplace(statement, true);
+        } else if (PrintStatement.type().equals(type)) {
+            return compilePrint(statement);
+        } else {
+            return new Failure(new InvalidStatementTypeException(statement));
+        }
+    }
+
+    private static CompiledStatement compileAssign(StatementNode node) {
+        String name = AssignStatement.class.getSimpleName();
+        List<Node> subnodes = node.subnodes();
+        if (subnodes == null) {
+            return new Failure(new StatementArgumentException(name + " Error: Assign must have subnodes" + node));
+        }
+
+        if (!(node.value() instanceof String)) {
+            return new Failure(new StatementArgumentException(name + " Error: Value must be a String"));
+        }
+
+        if (subnodes.size() != 1 || !(subnodes.get(0) instanceof ExpressionNode)) {
+            return new Failure(new IncorrectNodeTypeException(name + " Error: Requires 1 ExpressionNode", first(node)));
+        }
+
+        return new Assign((String) node.value(), compileExpression((ExpressionNode) subnodes.get(0)));
+    }
+
+    private static CompiledStatement compileReplace(StatementNode node, boolean recursive) {
+        String name = (recursive ? RecursiveReplaceStatement.class : ReplaceStatement.class).getSimpleName();
+        if (!(node.value() instanceof String[])) {
+            return new Failure(new StatementArgumentException(name + " Error: String[] required as argument"));
+        }
+
+        String[] values = (String[]) node.value();
+
+        if (values.length != 4) {
+            return new Failure(new StatementArgumentException(name + " Error: Requires 4 arguments, " + values.length + " given"));
+        }
+
+        String fileName1 = unquote(values[2]);
+        String fileName2 = unquote(values[3]);
+
+        if (fileName1.equals(fileName2)) {
+            return new Failure(new StatementArgumentException(name + " Error: File1 and File2 cannot be the same file (" + fileName1 + ")"));
+        }
+
+        String regex = unquote(values[0].replace(" ", ""));
+        String str = unquote(values[1]);
+        return new Replace(recursive, regex, str, fileName1, fileName2);
+    }
+
+    private static CompiledStatement compilePrint(StatementNode node) {
+        String name = PrintStatement.class.getSimpleName();
+        List<Node> subnodes = subnodes(node);
+        if (!(subnodes.size() == 1 && subnodes.get(0) instanceof ExpressionNode && subnodes.get(0).type().equals("EXP_LIST"))) {
+            return new Failure(new StatementArgumentException(name + " Error: Requires 1 EXP_LIST, but got " + first(node).type()));
+        }
+
+        subnodes = subnodes(subnodes.get(0));
+        if (!isExpressionPair(subnodes)) {
+            return new Failure(new IncorrectNodeTypeException(name + " Error: EXP_LIST Requires 2 ExpressionNodes", node));
+        }
+
+        // Each exp is printed before the list tail after it is checked, so a
+        // bad tail becomes a failing last exp
+        List<CompiledExpression> exps = new ArrayList<CompiledExpression>();
+        exps.add(compileExpression((ExpressionNode) subnodes.get(1)));
+        ExpressionNode currNode = (ExpressionNode) subnodes.get(0);
+
+        while (currNode.type().equals("EXP_LIST_TAIL")) {
+            subnodes = subnodes(currNode);
+            if (!isExpressionPair(subnodes)) {
+                exps.add(new Failure(new IncorrectNodeTypeException(name + " Error: Requires 2 ExpressionNodes", currNode)));
+                break;
+            }
+            exps.add(compileExpression((ExpressionNode) subnodes.get(1)));
+            currNode = (ExpressionNode) subnodes.get(0);
+        }
+        if (!currNode.type().equals("EXP_LIST_TAIL") && !currNode.type().equals("EXP_LIST_TAIL1")) {
+            exps.add(new Failure(new StatementArgumentException(name + " Error: Requires ExpListTails as left nodes")));
+        }
+
+        return new Print(exps.toArray(new CompiledExpression[exps.size()]));
+    }
+
+    private static CompiledExpression compileExpression(ExpressionNode node) {
+        String type = node.type();
+
+        if (IdExpression.type().equals(type)) {
+            if (!(node.value() instanceof String)) {
+                return new Failure(new ExpressionArgumentException(IdExpression.class.getSimpleName() + " Error: Value must be String"));
+            }
+            return new Id((String) node.value());
+        } else if (ParenExpression.type().equals(type)) {
+            return compileSingle(node, ParenExpression.class.getSimpleName());
+        } else if (TermExpression.type().equals(type)) {
+            return compileTerm(node);
+        } else if (BinopExpression.type().equals(type)) {
+            // Only valid as part of an EXP_TAIL1, which compiles it itself
+            String name = BinopExpression.class.getSimpleName();
+            if (!(node.value() instanceof String)) {
+                return new Failure(new ExpressionArgumentException(name + " Error: Requires a String as an argument"));
+            }
+            return new Failure(new ExpressionArgumentException(name + " Error: Requires 2 lists as parameters"));
+        } else if (SizeExpression.type().equals(type)) {
+            return new Size(compileSingle(node, SizeExpression.class.getSimpleName()));
+        } else if (MaxFreqExpression.type().equals(type)) {
+            if (!(node.value() instanceof String)) {
+                return new Failure(new ExpressionArgumentException(MaxFreqExpression.class.getSimpleName() + " Error: Value must be String"));
+            }
+            return new MaxFreq((String) node.value());
+        } else if (IDStatement1Expression.type().equals(type)) {
+            return compileSingle(node, IDStatement1Expression.class.getSimpleName());
+        } else if (Exp3Expression.type().equals(type)) {
+            return compileExp3(node);
+        } else if (ExpTail1Expression.type().equals(type)) {
+            // Only valid after a term, which is compiled with it
+            return new Failure(new ExpressionArgumentException(ExpTail1Expression.class.getSimpleName() + " Error: Requires a List as a parameter"));
+        } else {
+            return new Failure(new InvalidExpressionTypeException(node));
+        }
+    }
+
+    /**
+     * Compiles the only subnode of an expression that just passes its value on.
+     */
+    private static CompiledExpression compileSingle(ExpressionNode node, String name) {
+        List<Node> subnodes = subnodes(node);
+
+        if (subnodes.size() != 1 || !(subnodes.get(0) instanceof ExpressionNode)) {
+            return new Failure(new IncorrectNodeTypeException(name + " Error: Requires 1 ExpressionNode", first(node)));
+        }
+
+        return compileExpression((ExpressionNode) subnodes.get(0));
+    }
+
+    private static CompiledExpression compileTerm(ExpressionNode node) {
+        String name = TermExpression.class.getSimpleName();
+        if (!(node.value() instanceof String[])) {
+            return new Failure(new ExpressionArgumentException(name + " Error: Value must be String[]"));
+        }
+        String[] values = (String[]) node.value();
+
+        if (values.length != 2) {
+            return new Failure(new ExpressionArgumentException(name + " Error: Must have two arguments (" + values.length + " given)"));
+        }
+
+        return new Term(unquote(values[0].replace(" ", "")), unquote(values[1]));
+    }
+
+    /**
+     * term exp_tail, where the tail applies bin ops to the term from left to
+     * right.
+     */
+    private static CompiledExpression compileExp3(ExpressionNode node) {
+        String name = Exp3Expression.class.getSimpleName();
+        List<Node> subnodes = subnodes(node);
+
+        if (!isExpressionPair(subnodes)) {
+            return new Failure(new IncorrectNodeTypeException(name + " Error: Requires 2 ExpressionNodes (" + subnodes.size() + " given)", node));
+        }
+        ExpressionNode expTail = (ExpressionNode) subnodes.get(0);
+        ExpressionNode term = (ExpressionNode) subnodes.get(1);
+
+        if (!term.type().equals(TermExpression.type())) {
+            return new Failure(new ExpressionArgumentException(name + " Error: Second node must be an Term"));
+        }
+
+        if (expTail.type().equals(ExpTail1Expression.type())) {
+            return compileExpTail(expTail, compileExpression(term));
+        } else if (expTail.type().equals(ExpTail2Expression.type())) {
+            return compileExpression(term);
+        } else {
+            return new Failure(new ExpressionArgumentException(name + " Error: First node must be an ExpTail"));
+        }
+    }
+
+    /**
+     * bin_op term exp_tail, applied to the value of left.
+     */
+    private static CompiledExpression compileExpTail(ExpressionNode node, CompiledExpression left) {
+        String name = ExpTail1Expression.class.getSimpleName();
+        List<Node> subnodes = subnodes(node);
+
+        if (subnodes.size() != 3 || !(subnodes.get(0) instanceof ExpressionNode) || !(subnodes.get(1) instanceof ExpressionNode) || !(subnodes.get(2) instanceof ExpressionNode)) {
+            return new Failure(new IncorrectNodeTypeException(name + " Error: Requires 3 ExpressionNodes (" + subnodes.size() + " given)", node), left);
+        }
+        ExpressionNode expTail = (ExpressionNode) subnodes.get(0);
+        ExpressionNode term = (ExpressionNode) subnodes.get(1);
+        ExpressionNode binop = (ExpressionNode) subnodes.get(2);
+
+        if (!term.type().equals(TermExpression.type())) {
+            return new Failure(new ExpressionArgumentException(name + " Error: Second node must be an Term"), left);
+        }
+        if (!binop.type().equals(BinopExpression.type())) {
+            return new Failure(new ExpressionArgumentException(name + " Error: Second node must be an Binop"), left);
+        }
+        boolean last = expTail.type().equals(ExpTail2Expression.type());
+        if (!last && !expTail.type().equals(ExpTail1Expression.type())) {
+            return new Failure(new ExpressionArgumentException(name + " Error: First node must be an ExpTail"), left);
+        }
+
+        CompiledExpression right = compileExpression(term);
+        if (!(binop.value() instanceof String)) {
+            return new Failure(new ExpressionArgumentException(BinopExpression.class.getSimpleName() + " Error: Requires a String as an argument"), left, right);
+        }
+        BinopType type;
+        try {
+            type = BinopType.toBinop((String) binop.value());
+        } catch (ASTExecutionException ex) {
+            return new Failure(ex, left, right);
+        }
+
+        CompiledExpression result = new Binop(left, type, right);
+        return last ? result : compileExpTail(expTail, result);
+    }
+
+    private static boolean isExpressionPair(List<Node> subnodes) {
+        return subnodes.size() == 2 && subnodes.get(0) instanceof ExpressionNode && subnodes.get(1) instanceof ExpressionNode;
+    }
+
+    private static List<Node> subnodes(Node node) {
+        List<Node> subnodes = node.subnodes();
+        return subnodes == null ? Collections.<Node>emptyList() : subnodes;
+    }
+
+    /**
+     * The node to blame for a wrong subnode: the first subnode, or the node
+     * itself if it has none.
+     */
+    private static Node first(Node node) {
+        List<Node> subnodes = subnodes(node);
+        return subnodes.isEmpty() ? node : subnodes.get(0);
+    }
+
+    /**
+     * Removes the quotes around a regex, string or file name.
+     */
+    private static String unquote(String quoted) {
+        return quoted.substring(1, quoted.length() - 1);
+    }
+}
@@ -0,0 +1,7 @@
+package walker.compiled;
+
+import walker.exceptions.ASTExecutionException;
+
+interface CompiledExpression {
+    public Object evaluate(Environment env) throws ASTExecutionException;
+}
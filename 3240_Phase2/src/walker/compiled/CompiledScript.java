@@ -0,0 +1,41 @@
+package walker.compiled;
+
+import java.io.File;
+import main.PrintStream;
+import walker.exceptions.ASTExecutionException;
+
+/**
+ * A MiniRE script compiled by {@link ASTCompiler}.
+ *
+ * A script does not change when it is run, so it can be run any number of
+ * times, in different directories and from several threads at once. Every run
+ * starts with no IDs set.
+ */
+public class CompiledScript {
+    private final CompiledStatement[] statements;
+
+    CompiledScript(CompiledStatement[] statements) {
+        this.statements = statements;
+    }
+
+    /**
+     * Runs the script.
+     * @param out Where print statements print
+     * @param directory The directory file names are relative to
+     * @throws ASTExecutionException thrown by the first statement that fails.
+     * The statements before it have run.
+     */
+    public void run(PrintStream out, File directory) throws ASTExecutionException {
+        Environment env = new Environment(out, directory);
+        for (CompiledStatement statement : statements) {
+            statement.execute(env);
+        }
+    }
+
+    /**
+     * The number of statements in the script.
+     */
+    public int size() {
+        return statements.length;
+    }
+}
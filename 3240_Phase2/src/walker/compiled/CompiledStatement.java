@@ -0,0 +1,7 @@
+package walker.compiled;
+
+import walker.exceptions.ASTExecutionException;
+
+interface CompiledStatement {
+    public void execute(Environment env) throws ASTExecutionException;
+}
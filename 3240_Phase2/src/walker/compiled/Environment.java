@@ -0,0 +1,21 @@
+package walker.compiled;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import main.PrintStream;
+
+/**
+ * The state of one run of a compiled script: where it prints, the directory
+ * its file names are relative to, and the values of its IDs.
+ */
+final class Environment {
+    final PrintStream out;
+    final File directory;
+    final Map<String, Object> idMap = new HashMap<String, Object>();
+
+    Environment(PrintStream out, File directory) {
+        this.out = out;
+        this.directory = directory;
+    }
+}
@@ -0,0 +1,175 @@
+package walker.compiled;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import scanner.RegexCache;
+import scanner.RegexMatcher;
+import walker.datastructs.StringList;
+import walker.datastructs.StringWithMetaData;
+import walker.exceptions.ASTExecutionException;
+import walker.exceptions.ExpressionExpansionException;
+import walker.exceptions.UninitializedIDException;
+import walker.expressions.BinopExpression.BinopType;
+import walker.expressions.IdExpression;
+import walker.expressions.MaxFreqExpression;
+import walker.expressions.SizeExpression;
+import walker.expressions.TermExpression;
+
+/**
+ * The compiled expressions. Each one does what the expander of its node type
+ * does, with the arguments already taken out of the node.
+ */
+final class Expressions {
+    private Expressions() {
+    }
+
+    /** The value of an ID. */
+    static final class Id implements CompiledExpression {
+        private final String id;
+
+        Id(String id) {
+            this.id = id;
+        }
+
+        @Override
+        public Object evaluate(Environment env) throws ASTExecutionException {
+            Object value = env.idMap.get(id);
+            if (value == null) {
+                throw new UninitializedIDException(IdExpression.class.getSimpleName() + "Error : Uninitialized ID (" + id + ")");
+            }
+            return value;
+        }
+    }
+
+    /** find REGEX in FILENAME, where FILENAME can also list files and globs */
+    static final class Term implements CompiledExpression {
+        private final String regex;
+        private final String fileName;
+        // Compiled on first use, so an invalid regex fails where it did before
+        private volatile RegexMatcher matcher;
+
+        Term(String regex, String fileName) {
+            this.regex = regex;
+            this.fileName = fileName;
+        }
+
+        @Override
+        public List<StringWithMetaData> evaluate(Environment env) throws ExpressionExpansionException {
+            List<File> files = TermExpression.filesFor(env.directory, fileName);
+
+            RegexMatcher compiled = matcher;
+            if (compiled == null) {
+                compiled = RegexCache.matcherFor(regex);
+                matcher = compiled;
+            }
+            return TermExpression.listFromFiles(env.directory, files, compiled);
+        }
+    }
+
+    /** left BIN_OP right */
+    static final class Binop implements CompiledExpression {
+        private final CompiledExpression left;
+        private final BinopType type;
+        private final CompiledExpression right;
+
+        Binop(CompiledExpression left, BinopType type, CompiledExpression right) {
+            this.left = left;
+            this.type = type;
+            this.right = right;
+        }
+
+        @Override
+        public List<StringWithMetaData> evaluate(Environment env) throws ASTExecutionException {
+            List<StringWithMetaData> list1 = stringList(left.evaluate(env));
+            List<StringWithMetaData> list2 = stringList(right.evaluate(env));
+            return type.apply(list1, list2);
+        }
+
+        /**
+         * A value as a list of strings. Values that are lists are StringLists,
+         * other lists are copied with every element cast.
+         */
+        private static List<StringWithMetaData> stringList(Object value) {
+            List<?> list = (List<?>) value;
+            if (list instanceof StringList) {
+                return (StringList) list;
+            }
+            List<StringWithMetaData> strings = new ArrayList<StringWithMetaData>(list.size());
+            for (Object element : list) {
+                strings.add((StringWithMetaData) element);
+            }
+            return strings;
+        }
+    }
+
+    /** # exp */
+    static final class Size implements CompiledExpression {
+        private final CompiledExpression exp;
+
+        Size(CompiledExpression exp) {
+            this.exp = exp;
+        }
+
+        @Override
+        public Integer evaluate(Environment env) throws ASTExecutionException {
+            Object subResult = exp.evaluate(env);
+
+            if (!(subResult instanceof List)) {
+                throw new ExpressionExpansionException(SizeExpression.class.getSimpleName() + " Error: Can only take size of Lists (" + subResult.getClass() + " given)");
+            }
+
+            return ((List) subResult).size();
+        }
+    }
+
+    /** maxfreqstring(ID) */
+    static final class MaxFreq implements CompiledExpression {
+        private final String id;
+
+        MaxFreq(String id) {
+            this.id = id;
+        }
+
+        @Override
+        public String evaluate(Environment env) throws ASTExecutionException {
+            Object value = env.idMap.get(id);
+            if (value == null) {
+                throw new UninitializedIDException(MaxFreqExpression.class.getSimpleName() + "Error : Uninitialized ID (" + id + ")");
+            }
+
+            if (value instanceof List) {
+                return MaxFreqExpression.maxFreqString((List<?>) value);
+            } else {
+                throw new ExpressionExpansionException(MaxFreqExpression.class.getSimpleName() + " Error: Can only use Lists (" + value.getClass() + " given)");
+            }
+        }
+    }
+
+    /**
+     * A node the walker would reject. Evaluates the expressions the walker
+     * would have expanded first, then throws what the walker would throw.
+     */
+    static final class Failure implements CompiledExpression, CompiledStatement {
+        private final ASTExecutionException exception;
+        private final CompiledExpression[] before;
+
+        Failure(ASTExecutionException exception, CompiledExpression... before) {
+            this.exception = exception;
+            this.before = before;
+        }
+
+        @Override
+        public Object evaluate(Environment env) throws ASTExecutionException {
+            for (CompiledExpression exp : before) {
+                exp.evaluate(env);
+            }
+            throw exception;
+        }
+
+        @Override
+        public void execute(Environment env) throws ASTExecutionException {
+            evaluate(env);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package walker.compiled;
+
+import java.io.File;
+import walker.exceptions.ASTExecutionException;
+import walker.exceptions.StatementArgumentException;
+import walker.exceptions.StatementExecutionException;
+import walker.statements.RecursiveReplaceStatement;
+import walker.statements.ReplaceStatement;
+
+/**
+ * The compiled statements. Each one does what the executor of its node type
+ * does, with the arguments already taken out of the node.
+ */
+final class Statements {
+    private Statements() {
+    }
+
+    /** ID = exp */
+    static final class Assign implements CompiledStatement {
+        private final String id;
+        private final CompiledExpression exp;
+
+        Assign(String id, CompiledExpression exp) {
+            this.id = id;
+            this.exp = exp;
+        }
+
+        @Override
+        public void execute(Environment env) throws ASTExecutionException {
+            Object result = exp.evaluate(env);
+            env.idMap.put(id, result);
+        }
+    }
+
+    /** replace and recursivereplace */
+    static final class Replace implements CompiledStatement {
+        private final boolean recursive;
+        private final String regex;
+        private final String string;
+        private final String fileName1;
+        private final String fileName2;
+
+        Replace(boolean recursive, String regex, String string, String fileName1, String fileName2) {
+            this.recursive = recursive;
+            this.regex = regex;
+            this.string = string;
+            this.fileName1 = fileName1;
+            this.fileName2 = fileName2;
+        }
+
+        @Override
+        public void execute(Environment env) throws StatementExecutionException {
+            File file1 = new File(env.directory, fileName1);
+            File file2 = new File(env.directory, fileName2);
+
+            if (!file1.exists()) {
+                String name = (recursive ? RecursiveReplaceStatement.class : ReplaceStatement.class).getSimpleName();
+                throw new StatementArgumentException(name + " Error: " + file1 + " doesn't exist");
+            }
+
+            if (recursive) {
+                RecursiveReplaceStatement.replaceInFileRecursively(regex, string, file1, file2);
+            } else {
+                ReplaceStatement.replaceInFile(regex, string, file1, file2);
+            }
+        }
+    }
+
+    /** print(exp, ...) */
+    static final class Print implements CompiledStatement {
+        private final CompiledExpression[] exps;
+
+        Print(CompiledExpression[] exps) {
+            this.exps = exps;
+        }
+
+        @Override
+        public void execute(Environment env) throws ASTExecutionException {
+            for (CompiledExpression exp : exps) {
+                env.out.println(exp.evaluate(env));
+            }
+        }
+    }
+}
@@ -36,7 +36,7 @@ public class BinopExpression implements ExpressionExpander {
         return "BIN_OP";
     }
 
-    enum BinopType {
+    public enum BinopType {
         INTERS,
         INTERSEC,
         INTERSECT,
@@ -51,8 +51,8 @@ public class BinopExpression implements ExpressionExpander {
             }
         }
 
-        private List apply(List<StringWithMetaData> firstList, List<StringWithMetaData> secondList) {
-            List newList;
+        public List<StringWithMetaData> apply(List<StringWithMetaData> firstList, List<StringWithMetaData> secondList) {
+            StringList newList;
             switch (this) {
                 case INTERS:
                     newList = new StringList();
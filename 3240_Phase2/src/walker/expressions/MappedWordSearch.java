@@ -0,0 +1,328 @@
+package walker.expressions;
+
+import java.io.FileInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import scanner.RegexMatcher;
+import walker.datastructs.StringList;
+import walker.datastructs.StringWithMetaData;
+
+/**
+ * Finds the matching words of an ASCII file by running the matcher over the
+ * bytes of the memory mapped file.
+ *
+ * Lines and words are split on the bytes as {@link TermExpression} splits
+ * them on the characters, and line numbers and offsets are counted along
+ * the way, so the only objects created are those of the matches. Files over
+ * 2 GB are mapped one window at a time, each window ending after the last
+ * line separator in it.
+ *
+ * Large windows are cut into chunks at line separators and the chunks are
+ * scanned in parallel on a fork/join pool of its own, with as many workers
+ * as there are processors unless the minire.scanThreads system property
+ * says otherwise. The pool is only created for the first window large enough
+ * to split, and its workers are daemon threads. Each chunk numbers its
+ * lines from 0 and counts them; the matches are then added in file order,
+ * with the line numbers shifted by the lines of the chunks before, so the
+ * result is the same as that of a sequential scan.
+ *
+ * This only gives the same result as decoding the file if every byte is an
+ * ASCII character, so the search gives up on the first byte that is not, or
+ * if the platform charset does not read ASCII bytes as ASCII.
+ */
+final class MappedWordSearch {
+    private static final long WINDOW_SIZE = Integer.MAX_VALUE;
+    // Smaller windows are scanned in one chunk on the calling thread
+    private static final int MIN_CHUNK_SIZE = 4 * 1024 * 1024;
+    // Chunks per worker, so that a slow chunk does not hold up the others
+    private static final int CHUNKS_PER_THREAD = 4;
+    private static final int PARALLELISM = Integer.getInteger("minire.scanThreads",
+            Runtime.getRuntime().availableProcessors());
+    private static final boolean ASCII_CHARSET = readsAscii(Charset.defaultCharset());
+    private static final boolean[] WHITESPACE = new boolean[128];
+
+    static {
+        for (char c = 0; c < WHITESPACE.length; c++) {
+            WHITESPACE[c] = Character.isWhitespace(c);
+        }
+    }
+
+    private MappedWordSearch() {
+    }
+
+    /**
+     * Finds the words of a file that match a regex.
+     * @param file The file to search
+     * @param fileName The file name the matches are tagged with
+     * @param regex The regex a whole word has to match
+     * @return The matches, or null if the file is not ASCII.
+     * @throws java.io.FileNotFoundException thrown if the file doesn't exist.
+     * @throws IOException thrown if the file cannot be read.
+     */
+    static List<StringWithMetaData> find(File file, String fileName, RegexMatcher regex) throws IOException {
+        if (!ASCII_CHARSET) {
+            return null;
+        }
+        List<StringWithMetaData> wordList = new StringList();
+        int lineNumber = 0;
+        FileChannel channel = new FileInputStream(file).getChannel();
+        try {
+            long size = channel.size();
+            long position = 0;
+            do {
+                long length = Math.min(WINDOW_SIZE, size - position);
+                ByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                int end = (int) length;
+                if (position + length < size) {
+                    end = lastLineEnd(window, end);
+                    if (end == 0) {
+                        // A line longer than a window
+                        return null;
+                    }
+                }
+
+                Chunk[] chunks = split(window, end, regex);
+                if (chunks.length == 1) {
+                    chunks[0].scan();
+                } else {
+                    ScanPool.POOL.invoke(new ParallelScan(chunks, 0, chunks.length));
+                }
+                for (Chunk chunk : chunks) {
+                    if (!chunk.ascii) {
+                        return null;
+                    }
+                    chunk.addTo(wordList, fileName, lineNumber);
+                    lineNumber += chunk.lines;
+                }
+                position += end;
+            } while (position < size);
+        } finally {
+            channel.close();
+        }
+        return wordList;
+    }
+
+    /**
+     * Cuts the first bytes of a window into chunks of about the same size,
+     * each starting at the start of a line.
+     */
+    private static Chunk[] split(ByteBuffer window, int end, RegexMatcher regex) {
+        int count = (int) Math.min((long) PARALLELISM * CHUNKS_PER_THREAD, end / MIN_CHUNK_SIZE);
+        if (PARALLELISM < 2 || count < 2) {
+            return new Chunk[] { new Chunk(window, 0, end, regex) };
+        }
+        List<Chunk> chunks = new ArrayList<Chunk>(count);
+        int start = 0;
+        for (int i = 1; i <= count && start < end; i++) {
+            int chunkEnd = i == count ? end : nextLineStart(window, (int) ((long) end * i / count), end);
+            if (chunkEnd > start) {
+                chunks.add(new Chunk(window, start, chunkEnd, regex));
+                start = chunkEnd;
+            }
+        }
+        return chunks.toArray(new Chunk[chunks.size()]);
+    }
+
+    /**
+     * The index after the last line separator of a window, not counting a
+     * \r at its very end, which could be the first half of a \r\n.
+     * @return The index, or 0 if there is none.
+     */
+    private static int lastLineEnd(ByteBuffer bytes, int length) {
+        for (int i = length - 1; i >= 0; i--) {
+            byte b = bytes.get(i);
+            if (b == '\n' || (b == '\r' && i < length - 1)) {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * The start of the first line that starts at or after an index.
+     * @return The start, or end if no line starts before it.
+     */
+    private static int nextLineStart(ByteBuffer bytes, int from, int end) {
+        for (int i = Math.max(from, 1); i < end; i++) {
+            byte previous = bytes.get(i - 1);
+            if (previous == '\n' || (previous == '\r' && bytes.get(i) != '\n')) {
+                return i;
+            }
+        }
+        return end;
+    }
+
+    /**
+     * The pool chunks are scanned on, made on first use. Fork/join workers
+     * are daemon threads, so they never keep a script from ending.
+     */
+    private static final class ScanPool {
+        static final ForkJoinPool POOL = new ForkJoinPool(PARALLELISM);
+    }
+
+    /**
+     * Scans a range of chunks, splitting it across the fork/join pool.
+     */
+    private static class ParallelScan extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Chunk[] chunks;
+        private final int from;
+        private final int to;
+
+        ParallelScan(Chunk[] chunks, int from, int to) {
+            this.chunks = chunks;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                chunks[from].scan();
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new ParallelScan(chunks, from, middle), new ParallelScan(chunks, middle, to));
+        }
+    }
+
+    /**
+     * The bytes from the start of a line up to the start of another line, or
+     * the end of the file, and the matches found in them.
+     */
+    private static final class Chunk {
+        private final ByteBuffer bytes;
+        private final int start;
+        private final int end;
+        private final RegexMatcher regex;
+
+        private final List<String> words = new ArrayList<String>();
+        // The line, start index and end index of each word
+        private int[] positions = new int[48];
+        private int lines;
+        private boolean ascii = true;
+
+        Chunk(ByteBuffer bytes, int start, int end, RegexMatcher regex) {
+            this.bytes = bytes;
+            this.start = start;
+            this.end = end;
+            this.regex = regex;
+        }
+
+        void scan() {
+            int i = start;
+            int lineStart = i;
+            int wordStart = -1;
+            while (i < end) {
+                byte b = bytes.get(i);
+                if (b < 0) {
+                    ascii = false;
+                    return;
+                }
+                if (b == '\n' || b == '\r') {
+                    if (wordStart >= 0) {
+                        word(lineStart, wordStart, i);
+                        wordStart = -1;
+                    }
+                    lines++;
+                    i++;
+                    if (b == '\r' && i < end && bytes.get(i) == '\n') {
+                        i++;
+                    }
+                    lineStart = i;
+                } else {
+                    if (WHITESPACE[b]) {
+                        if (wordStart >= 0) {
+                            word(lineStart, wordStart, i);
+                            wordStart = -1;
+                        }
+                    } else if (wordStart < 0) {
+                        wordStart = i;
+                    }
+                    i++;
+                }
+            }
+            if (wordStart >= 0) {
+                word(lineStart, wordStart, end);
+            }
+        }
+
+        private void word(int lineStart, int wordStart, int wordEnd) {
+            if (!regex.matches(bytes, wordStart, wordEnd)) {
+                return;
+            }
+            byte[] word = new byte[wordEnd - wordStart];
+            for (int i = 0; i < word.length; i++) {
+                word[i] = bytes.get(wordStart + i);
+            }
+            // Where the word first occurs in its line, as found by String.indexOf
+            int startIndex = firstOccurrence(lineStart, wordStart, word) - lineStart;
+
+            int index = words.size() * 3;
+            if (index + 3 > positions.length) {
+                positions = Arrays.copyOf(positions, positions.length * 2);
+            }
+            positions[index] = lines;
+            positions[index + 1] = startIndex;
+            positions[index + 2] = startIndex + word.length;
+            words.add(new String(word, StandardCharsets.US_ASCII));
+        }
+
+        private int firstOccurrence(int from, int last, byte[] word) {
+            for (int i = from; i < last; i++) {
+                int j = 0;
+                while (j < word.length && bytes.get(i + j) == word[j]) {
+                    j++;
+                }
+                if (j == word.length) {
+                    return i;
+                }
+            }
+            return last;
+        }
+
+        /**
+         * Adds the matches to a list, in the order they were found.
+         * @param firstLine The number of the first line of the chunk
+         */
+        void addTo(List<StringWithMetaData> wordList, String fileName, int firstLine) {
+            for (int i = 0; i < words.size(); i++) {
+                int index = i * 3;
+                wordList.add(new StringWithMetaData(words.get(i), fileName, firstLine + positions[index],
+                        positions[index + 1], positions[index + 2]));
+            }
+        }
+    }
+
+    private static boolean readsAscii(Charset charset) {
+        byte[] ascii = new byte[128];
+        for (int i = 0; i < ascii.length; i++) {
+            ascii[i] = (byte) i;
+        }
+        String decoded;
+        try {
+            decoded = new String(ascii, charset);
+        } catch (UnsupportedOperationException ex) {
+            return false;
+        }
+        if (decoded.length() != ascii.length) {
+            return false;
+        }
+        for (int i = 0; i < ascii.length; i++) {
+            if (decoded.charAt(i) != i) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
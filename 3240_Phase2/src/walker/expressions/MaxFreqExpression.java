@@ -31,25 +31,32 @@ public class MaxFreqExpression implements ExpressionExpander {
         }
 
         if (value instanceof List) {
-            List<StringWithMetaData> list = (List) value;
-
-            int maxSize = 0;
-            StringWithMetaData maxObject = null;
-
-            for (StringWithMetaData o : list) {
-                int size = o.size();
-                if (size > maxSize) {
-                    maxSize = size;
-                    maxObject = o;
-                }
-            }
-
-            return maxObject.getString();
+            return maxFreqString((List<?>) value);
         } else {
             throw new ExpressionExpansionException(this.getClass().getSimpleName() + " Error: Can only use Lists (" + value.getClass() + " given)");
         }
     }
 
+    /**
+     * The string that occurs most often in a list. Every element must be a
+     * StringWithMetaData.
+     */
+    public static String maxFreqString(List<?> list) {
+        int maxSize = 0;
+        StringWithMetaData maxObject = null;
+
+        for (Object element : list) {
+            StringWithMetaData o = (StringWithMetaData) element;
+            int size = o.size();
+            if (size > maxSize) {
+                maxSize = size;
+                maxObject = o;
+            }
+        }
+
+        return maxObject.getString();
+    }
+
     public static String type() {
         return "ID_STATEMENT3";
     }
@@ -2,9 +2,26 @@ package walker.expressions;
 
 import ast.ExpressionNode;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.file.FileSystems;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Scanner;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import scanner.RegexCache;
+import scanner.RegexMatcher;
 import walker.ExpressionDelegate;
 import walker.datastructs.StringList;
 import walker.datastructs.StringWithMetaData;
@@ -12,6 +29,8 @@ import walker.exceptions.ExpressionArgumentException;
 import walker.exceptions.ExpressionExpansionException;
 
 public class TermExpression implements ExpressionExpander {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
     private File directory;
     
     public TermExpression(File directory) {
@@ -33,44 +52,280 @@ public class TermExpression implements ExpressionExpander {
         String fileName = values[1];
         fileName = fileName.substring(1, fileName.length()-1);
 
+        List<File> files = filesFor(directory, fileName);
+
+        return listFromFiles(directory, files, RegexCache.matcherFor(regex));
+    }
+
+    /**
+     * Finds the files a find searches. The file name is either the name of a
+     * file, or a comma-separated list of names. The last part of each name
+     * can be a glob, such as logs/*.txt or *.{txt,log}, which stands for the
+     * files it matches, in the order of their names.
+     * @param directory The directory names are relative to
+     * @param fileName The file name of the find, without the quotes
+     * @return The files, each one once.
+     * @throws ExpressionArgumentException thrown if a file doesn't exist or a
+     * glob doesn't match any file.
+     */
+    public static List<File> filesFor(File directory, String fileName) throws ExpressionArgumentException {
         File file = new File(directory, fileName);
+        if (file.exists()) {
+            return Arrays.asList(file);
+        }
 
-        if (!file.exists())
-            throw new ExpressionArgumentException(this.getClass().getSimpleName() + " Error: " + file + " doesn't exist");
+        Set<File> files = new LinkedHashSet<File>();
+        for (String name : splitNames(fileName)) {
+            if (name.isEmpty()) {
+                continue;
+            }
+            file = new File(directory, name);
+            if (file.exists() || !isGlob(file.getName())) {
+                if (!file.exists())
+                    throw new ExpressionArgumentException(TermExpression.class.getSimpleName() + " Error: " + file + " doesn't exist");
+                files.add(file);
+            } else {
+                files.addAll(matchingFiles(file));
+            }
+        }
+        if (files.isEmpty()) {
+            throw new ExpressionArgumentException(TermExpression.class.getSimpleName() + " Error: " + new File(directory, fileName) + " doesn't exist");
+        }
+        return new ArrayList<File>(files);
+    }
 
-        return listFromFile(file, regex);
+    /**
+     * Splits a list of names at the commas that are not in a {a,b} glob.
+     */
+    private static List<String> splitNames(String fileNames) {
+        List<String> names = new ArrayList<String>();
+        int depth = 0;
+        int start = 0;
+        for (int i = 0; i < fileNames.length(); i++) {
+            char c = fileNames.charAt(i);
+            if (c == '{') {
+                depth++;
+            } else if (c == '}' && depth > 0) {
+                depth--;
+            } else if (c == ',' && depth == 0) {
+                names.add(fileNames.substring(start, i).trim());
+                start = i + 1;
+            }
+        }
+        names.add(fileNames.substring(start).trim());
+        return names;
     }
 
-    private List<StringWithMetaData> listFromFile(File file, String regex) throws ExpressionExpansionException {
-        try {
-            Scanner scan = new Scanner(file);
+    private static boolean isGlob(String name) {
+        return name.indexOf('*') >= 0 || name.indexOf('?') >= 0 || name.indexOf('[') >= 0 || name.indexOf('{') >= 0;
+    }
 
-            List<StringWithMetaData> wordList = new StringList();
-            int lineNumber = 0;
+    private static List<File> matchingFiles(File glob) throws ExpressionArgumentException {
+        File[] candidates = glob.getParentFile().listFiles();
+        if (candidates == null) {
+            throw new ExpressionArgumentException(TermExpression.class.getSimpleName() + " Error: " + glob.getParentFile() + " doesn't exist");
+        }
+        Arrays.sort(candidates);
 
-            while (scan.hasNextLine()) {
-                String line = scan.nextLine();
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob.getName());
+        List<File> files = new ArrayList<File>();
+        for (File candidate : candidates) {
+            if (candidate.isFile() && matcher.matches(candidate.toPath().getFileName())) {
+                files.add(candidate);
+            }
+        }
+        if (files.isEmpty()) {
+            throw new ExpressionArgumentException(TermExpression.class.getSimpleName() + " Error: " + glob + " doesn't match any file");
+        }
+        return files;
+    }
+
+    /**
+     * Finds the words of several files that match a regex. The files are
+     * searched at the same time on a pool of minire.findThreads threads (8
+     * by default), and their matches are put together as by union, in the
+     * order of the files. Matches are tagged with the path of their file
+     * relative to the directory, so that files of the same name in different
+     * directories are told apart.
+     * @param directory The directory the files were named relative to
+     * @param files The files to search
+     * @param regex The regex a whole word has to match
+     * @return The matches, with the file, line and position of each.
+     * @throws ExpressionExpansionException thrown if a file doesn't exist or
+     * cannot be read. The first such file in the list is reported.
+     */
+    public static List<StringWithMetaData> listFromFiles(File directory, List<File> files, final RegexMatcher regex) throws ExpressionExpansionException {
+        if (files.size() == 1) {
+            return listFromFile(files.get(0), relativeName(directory, files.get(0)), regex);
+        }
 
-                Scanner lineScanner = new Scanner(line);
-                while (lineScanner.hasNext()) {
-                    String input = lineScanner.next();
-                    if (input.matches(regex)) {
-                        int startIndex = line.indexOf(input);
-                        int endIndex = startIndex + input.length();
-                        wordList.add(new StringWithMetaData(input, file.getName(), lineNumber, startIndex, endIndex));
+        List<Future<List<StringWithMetaData>>> results = new ArrayList<Future<List<StringWithMetaData>>>();
+        for (final File file : files) {
+            final String fileName = relativeName(directory, file);
+            results.add(FilePool.POOL.submit(new Callable<List<StringWithMetaData>>() {
+                @Override
+                public List<StringWithMetaData> call() throws ExpressionExpansionException {
+                    return listFromFile(file, fileName, regex);
+                }
+            }));
+        }
+
+        List<StringWithMetaData> wordList = new StringList();
+        boolean interrupted = false;
+        try {
+            for (Future<List<StringWithMetaData>> result : results) {
+                while (true) {
+                    try {
+                        wordList.addAll(result.get());
+                        break;
+                    } catch (InterruptedException ex) {
+                        interrupted = true;
+                    } catch (ExecutionException ex) {
+                        for (Future<List<StringWithMetaData>> other : results) {
+                            other.cancel(true);
+                        }
+                        Throwable cause = ex.getCause();
+                        if (cause instanceof ExpressionExpansionException) {
+                            throw (ExpressionExpansionException) cause;
+                        } else if (cause instanceof RuntimeException) {
+                            throw (RuntimeException) cause;
+                        } else if (cause instanceof Error) {
+                            throw (Error) cause;
+                        }
+                        throw new IllegalStateException(cause);
                     }
                 }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return wordList;
+    }
+
+    /**
+     * The path of a file relative to the directory it was named in.
+     */
+    private static String relativeName(File directory, File file) {
+        if (directory == null) {
+            return file.getPath();
+        }
+        return directory.toPath().relativize(file.toPath()).toString();
+    }
+
+    /**
+     * Finds the words of a file that match a regex, tagging them with the
+     * name of the file. See {@link #listFromFile(File, String, RegexMatcher)}.
+     */
+    public static List<StringWithMetaData> listFromFile(File file, RegexMatcher regex) throws ExpressionExpansionException {
+        return listFromFile(file, file.getName(), regex);
+    }
 
-                lineNumber++;
+    /**
+     * Finds the words of a file that match a regex, reading the file once.
+     * Lines and words are split as by java.util.Scanner: lines at any line
+     * separator, words at whitespace. ASCII files are searched in their
+     * memory mapped bytes, see {@link MappedWordSearch}.
+     * @param file The file to search
+     * @param fileName The file name the matches are tagged with
+     * @param regex The regex a whole word has to match
+     * @return The matches, with the line and position of each.
+     * @throws ExpressionExpansionException thrown if the file doesn't exist
+     * or cannot be read.
+     */
+    public static List<StringWithMetaData> listFromFile(File file, String fileName, RegexMatcher regex) throws ExpressionExpansionException {
+        try {
+            List<StringWithMetaData> wordList = MappedWordSearch.find(file, fileName, regex);
+            if (wordList != null) {
+                return wordList;
             }
-            return wordList;
+        } catch (FileNotFoundException ex) {
+            throw new ExpressionArgumentException(TermExpression.class.getSimpleName() + " Error: " + file + " doesn't exist");
+        } catch (IOException ex) {
+            throw new ExpressionExpansionException(TermExpression.class.getSimpleName() + " Error: Cannot read " + file);
+        }
 
+        Reader reader;
+        try {
+            reader = new InputStreamReader(new FileInputStream(file));
         } catch (FileNotFoundException ex) {
-            throw new ExpressionArgumentException(this.getClass().getSimpleName() + " Error: " + file + " doesn't exist");
+            throw new ExpressionArgumentException(TermExpression.class.getSimpleName() + " Error: " + file + " doesn't exist");
+        }
+
+        List<StringWithMetaData> wordList = new StringList();
+        StringBuilder line = new StringBuilder();
+        char[] buffer = new char[BUFFER_SIZE];
+        int lineNumber = 0;
+        boolean afterCR = false;
+        try {
+            try {
+                int read;
+                while ((read = reader.read(buffer)) != -1) {
+                    for (int i = 0; i < read; i++) {
+                        char c = buffer[i];
+                        if (c == '\n' && afterCR) {
+                            afterCR = false;
+                            continue;
+                        }
+                        afterCR = c == '\r';
+                        if (c == '\n' || c == '\r' || c == '\u2028' || c == '\u2029' || c == '\u0085') {
+                            findWords(line, lineNumber++, fileName, regex, wordList);
+                            line.setLength(0);
+                        } else {
+                            line.append(c);
+                        }
+                    }
+                }
+                if (line.length() > 0) {
+                    findWords(line, lineNumber, fileName, regex, wordList);
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException ex) {
+            throw new ExpressionExpansionException(TermExpression.class.getSimpleName() + " Error: Cannot read " + file);
+        }
+        return wordList;
+    }
+
+    private static void findWords(StringBuilder line, int lineNumber, String fileName, RegexMatcher regex, List<StringWithMetaData> wordList) {
+        int length = line.length();
+        int i = 0;
+        while (i < length) {
+            while (i < length && Character.isWhitespace(line.charAt(i))) {
+                i++;
+            }
+            int start = i;
+            while (i < length && !Character.isWhitespace(line.charAt(i))) {
+                i++;
+            }
+            if (i > start && regex.matches(line, start, i)) {
+                String input = line.substring(start, i);
+                int startIndex = line.indexOf(input);
+                int endIndex = startIndex + input.length();
+                wordList.add(new StringWithMetaData(input, fileName, lineNumber, startIndex, endIndex));
+            }
         }
     }
 
     public static String type() {
         return "TERM";
     }
+
+    /**
+     * The threads that search the files of a find with several files, made
+     * on first use. They are daemon threads, so they never keep a script
+     * from ending.
+     */
+    private static final class FilePool {
+        static final ExecutorService POOL = Executors.newFixedThreadPool(Integer.getInteger("minire.findThreads", 8), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable task) {
+                Thread thread = new Thread(task, "minire-find");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
 }
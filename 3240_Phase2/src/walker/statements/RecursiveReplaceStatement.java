@@ -7,6 +7,8 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.Scanner;
+import java.util.regex.Pattern;
+import scanner.RegexCache;
 import walker.exceptions.StatementArgumentException;
 import walker.exceptions.StatementExecutionException;
 
@@ -16,13 +18,27 @@ public class RecursiveReplaceStatement extends ReplaceStatement {
     }
     @Override
     protected void replace(String regex, String string, File fromFile, File toFile) throws StatementExecutionException {
+        replaceInFileRecursively(regex, string, fromFile, toFile);
+    }
+
+    /**
+     * Writes a file with the matches of a regex replaced until none are left.
+     * @param regex The regex to replace
+     * @param string The replacement, which must differ from the regex
+     * @param fromFile The file to read
+     * @param toFile The file to write
+     * @throws StatementExecutionException thrown if a file cannot be read or written.
+     */
+    public static void replaceInFileRecursively(String regex, String string, File fromFile, File toFile) throws StatementExecutionException {
         if (regex.equals(string)) {
-            throw new StatementArgumentException(this.getClass().getSimpleName() + " Error: Regex cannot equal string (" + regex + ")");
+            throw new StatementArgumentException(RecursiveReplaceStatement.class.getSimpleName() + " Error: Regex cannot equal string (" + regex + ")");
         }
 
         FileWriter fwriter = null;
         BufferedWriter bwriter = null;
         PrintWriter pwriter = null;
+        // Looked up at the first line, so an invalid regex fails where it did before
+        Pattern pattern = null;
         try {
             fwriter = new FileWriter(toFile);
             bwriter = new BufferedWriter(fwriter);
@@ -30,11 +46,14 @@ public class RecursiveReplaceStatement extends ReplaceStatement {
             Scanner scan = new Scanner(fromFile);
             while (scan.hasNextLine()) {
                 String str = scan.nextLine();
-                String newStr = str.replaceAll(regex, string);
+                if (pattern == null) {
+                    pattern = RegexCache.patternFor(regex);
+                }
+                String newStr = pattern.matcher(str).replaceAll(string);
                 String currStr = newStr;
                 boolean changed = !str.equals(newStr);
                 while(changed) {
-                    newStr = currStr.replaceAll(regex, string);
+                    newStr = pattern.matcher(currStr).replaceAll(string);
                     changed = !currStr.equals(newStr);
                     currStr = newStr;
                 }
@@ -42,9 +61,9 @@ public class RecursiveReplaceStatement extends ReplaceStatement {
             }
             pwriter.flush();
         } catch (FileNotFoundException ex) {
-            throw new StatementArgumentException(this.getClass().getSimpleName() + " Error: " + fromFile + " doesn't exist");
+            throw new StatementArgumentException(RecursiveReplaceStatement.class.getSimpleName() + " Error: " + fromFile + " doesn't exist");
         } catch (IOException ex) {
-            throw new StatementArgumentException(this.getClass().getSimpleName() + " Error: Cannot write to " + toFile);
+            throw new StatementArgumentException(RecursiveReplaceStatement.class.getSimpleName() + " Error: Cannot write to " + toFile);
         } finally {
             if (pwriter != null) {
                 pwriter.close();
@@ -3,6 +3,8 @@ package walker.statements;
 import ast.StatementNode;
 import java.io.*;
 import java.util.Scanner;
+import java.util.regex.Pattern;
+import scanner.RegexCache;
 import walker.ExpressionDelegate;
 import walker.exceptions.StatementArgumentException;
 import walker.exceptions.StatementExecutionException;
@@ -53,9 +55,23 @@ public class ReplaceStatement implements StatementExecutor {
     }
 
     protected void replace(String regex, String string, File fromFile, File toFile) throws StatementExecutionException {
+        replaceInFile(regex, string, fromFile, toFile);
+    }
+
+    /**
+     * Writes a file with every match of a regex replaced.
+     * @param regex The regex to replace
+     * @param string The replacement
+     * @param fromFile The file to read
+     * @param toFile The file to write
+     * @throws StatementExecutionException thrown if a file cannot be read or written.
+     */
+    public static void replaceInFile(String regex, String string, File fromFile, File toFile) throws StatementExecutionException {
         FileWriter fwriter = null;
         BufferedWriter bwriter = null;
         PrintWriter pwriter = null;
+        // Looked up at the first line, so an invalid regex fails where it did before
+        Pattern pattern = null;
         try {
             fwriter = new FileWriter(toFile);
             bwriter = new BufferedWriter(fwriter);
@@ -63,15 +79,18 @@ public class ReplaceStatement implements StatementExecutor {
             Scanner scan = new Scanner(fromFile);
             while (scan.hasNextLine()) {
                 String str = scan.nextLine();
-                String newStr = str.replaceAll(regex, string);
+                if (pattern == null) {
+                    pattern = RegexCache.patternFor(regex);
+                }
+                String newStr = pattern.matcher(str).replaceAll(string);
                 pwriter.println(newStr);
                 //System.out.println(regex + ", " + string + ", " + str + ", " + newStr);
             }
             pwriter.flush();
         } catch (FileNotFoundException ex) {
-            throw new StatementArgumentException(this.getClass().getSimpleName() + " Error: " + fromFile + " doesn't exist");
+            throw new StatementArgumentException(ReplaceStatement.class.getSimpleName() + " Error: " + fromFile + " doesn't exist");
         } catch (IOException ex) {
-            throw new StatementArgumentException(this.getClass().getSimpleName() + " Error: Cannot write to " + toFile);
+            throw new StatementArgumentException(ReplaceStatement.class.getSimpleName() + " Error: Cannot write to " + toFile);
         } finally {
             if (pwriter != null) {
                 pwriter.close();
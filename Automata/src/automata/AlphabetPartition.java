@@ -0,0 +1,175 @@
+package automata;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Splits the alphabet of an automaton into equivalence classes.
+ *
+ * Two characters share a class when every state of the automaton moves to the
+ * same place over both of them, so conversion and transition tables only need
+ * one column per class instead of one per character. Character classes such as
+ * $LETTER usually collapse into a handful of columns.
+ */
+public class AlphabetPartition {
+    private static final int NO_CLASS = -1;
+
+    private int[] classOfChar;
+    private char[][] members;
+
+    /**
+     * Partitions the alphabet of an NFA. Epsilon transitions are ignored.
+     * @param nfa The NFA to partition.
+     * @return The partition.
+     */
+    public static AlphabetPartition of(NFA nfa) {
+        if (nfa instanceof MapBasedNFA) {
+            return of((MapBasedNFA) nfa);
+        }
+        Character[] letters = sortedLetters(nfa.alphabet());
+        Refiner refiner = new Refiner(letters.length);
+        Object[] targets = new Object[letters.length];
+        for (State state : nfa.allStates()) {
+            for (int i = 0; i < letters.length; i++) {
+                targets[i] = nfa.transitions(state, letters[i]);
+            }
+            refiner.refine(targets);
+        }
+        return new AlphabetPartition(letters, refiner.classIds, refiner.classCount);
+    }
+
+    /**
+     * Partitions using the direct targets of each state, without epsilon
+     * closures. Letters with the same direct targets also have the same
+     * closures, so no letters are grouped that should be apart, and no sets
+     * have to be built.
+     */
+    private static AlphabetPartition of(MapBasedNFA nfa) {
+        Character[] letters = sortedLetters(nfa.alphabet());
+        Refiner refiner = new Refiner(letters.length);
+        Object[] targets = new Object[letters.length];
+        for (HashMap<Character, HashSet<State>> transitionsForState : nfa.getTransitions().values()) {
+            for (int i = 0; i < letters.length; i++) {
+                targets[i] = transitionsForState.get(letters[i]);
+            }
+            refiner.refine(targets);
+        }
+        return new AlphabetPartition(letters, refiner.classIds, refiner.classCount);
+    }
+
+    /**
+     * Partitions the alphabet of a DFA.
+     * @param dfa The DFA to partition.
+     * @return The partition.
+     */
+    public static AlphabetPartition of(DFA dfa) {
+        Character[] letters = sortedLetters(dfa.alphabet());
+        Refiner refiner = new Refiner(letters.length);
+        Object[] targets = new Object[letters.length];
+        for (State state : dfa.allStates()) {
+            for (int i = 0; i < letters.length; i++) {
+                targets[i] = dfa.transition(state, letters[i]);
+            }
+            refiner.refine(targets);
+        }
+        return new AlphabetPartition(letters, refiner.classIds, refiner.classCount);
+    }
+
+    private AlphabetPartition(Character[] letters, int[] classIds, int classCount) {
+        char maxChar = letters.length == 0 ? 0 : letters[letters.length - 1];
+        classOfChar = new int[maxChar + 1];
+        Arrays.fill(classOfChar, NO_CLASS);
+
+        List<List<Character>> classMembers = new ArrayList<List<Character>>();
+        for (int i = 0; i < classCount; i++) {
+            classMembers.add(new ArrayList<Character>());
+        }
+        for (int i = 0; i < letters.length; i++) {
+            classOfChar[letters[i]] = classIds[i];
+            classMembers.get(classIds[i]).add(letters[i]);
+        }
+
+        members = new char[classCount][];
+        for (int i = 0; i < classCount; i++) {
+            List<Character> chars = classMembers.get(i);
+            members[i] = new char[chars.size()];
+            for (int j = 0; j < chars.size(); j++) {
+                members[i][j] = chars.get(j);
+            }
+        }
+    }
+
+    /**
+     * The number of equivalence classes.
+     * @return The class count.
+     */
+    public int classCount() {
+        return members.length;
+    }
+
+    /**
+     * The class a character belongs to.
+     * @param letter A character
+     * @return Its class id, or -1 if the character is not in the alphabet.
+     */
+    public int classOf(char letter) {
+        return letter < classOfChar.length ? classOfChar[letter] : NO_CLASS;
+    }
+
+    /**
+     * A character that stands for the whole class.
+     * @param classId A class id
+     * @return The smallest character of the class.
+     */
+    public char representative(int classId) {
+        return members[classId][0];
+    }
+
+    /**
+     * All characters in a class, in ascending order.
+     * @param classId A class id
+     * @return A copy of the members of the class.
+     */
+    public char[] members(int classId) {
+        return members[classId].clone();
+    }
+
+    private static Character[] sortedLetters(Set<Character> alphabet) {
+        alphabet.remove(null);
+        return new TreeSet<Character>(alphabet).toArray(new Character[0]);
+    }
+
+    /**
+     * Refines the partition one state at a time: after each state, two letters
+     * stay together only if they were together before and lead to the same
+     * target from that state.
+     */
+    private static class Refiner {
+        private int[] classIds;
+        private int classCount;
+
+        Refiner(int letterCount) {
+            classIds = new int[letterCount];
+            classCount = letterCount == 0 ? 0 : 1;
+        }
+
+        void refine(Object[] targets) {
+            HashMap<List<Object>, Integer> newIds = new HashMap<List<Object>, Integer>();
+            for (int i = 0; i < classIds.length; i++) {
+                List<Object> key = Arrays.asList((Object) classIds[i], targets[i]);
+                Integer newId = newIds.get(key);
+                if (newId == null) {
+                    newId = newIds.size();
+                    newIds.put(key, newId);
+                }
+                classIds[i] = newId;
+            }
+            classCount = newIds.size();
+        }
+    }
+}
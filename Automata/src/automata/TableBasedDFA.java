@@ -0,0 +1,241 @@
+package automata;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+
+/**
+ * A DFA backed by a flat int transition table.
+ *
+ * States are numbered densely in breadth-first order from the start state and
+ * every row of the table holds the index of the next state for each
+ * equivalence class of the alphabet (see {@link AlphabetPartition}), so a
+ * transition costs two array reads instead of two hash lookups. A missing
+ * transition is stored as -1. States from which no final state can be reached
+ * are flagged as dead, so a scanner can stop as soon as it enters one.
+ *
+ * The table is built once from any other DFA and is read-only afterwards. It
+ * makes its own copies of the states with ids equal to their indexes, so the
+ * states of the source DFA are not part of the table.
+ */
+public class TableBasedDFA implements DFA {
+    private static final int NO_STATE = -1;
+
+    private State[] states;
+    private boolean[] finalFlags;
+    private boolean[] deadFlags;
+    private Set<Character> alphabet;
+    private AlphabetPartition partition;
+    private int columns;
+    private int[] table;
+
+    /**
+     * Copies the reachable part of the given DFA into a transition table.
+     * @param dfa The DFA to copy. It is not modified.
+     */
+    public TableBasedDFA(DFA dfa) {
+        this.alphabet = dfa.alphabet();
+        this.alphabet.remove(null);
+        this.partition = AlphabetPartition.of(dfa);
+        columns = partition.classCount();
+
+        List<State> stateList = new ArrayList<State>();
+        List<int[]> rows = new ArrayList<int[]>();
+        HashMap<State, Integer> stateIndex = new HashMap<State, Integer>();
+        Queue<State> fringe = new LinkedList<State>();
+
+        stateIndex.put(dfa.startState(), 0);
+        stateList.add(dfa.startState());
+        fringe.add(dfa.startState());
+        while (!fringe.isEmpty()) {
+            State currState = fringe.poll();
+            int[] row = new int[columns];
+            for (int column = 0; column < columns; column++) {
+                State nextState = dfa.transition(currState, partition.representative(column));
+                if (nextState == null) {
+                    row[column] = NO_STATE;
+                    continue;
+                }
+                Integer nextIndex = stateIndex.get(nextState);
+                if (nextIndex == null) {
+                    nextIndex = stateList.size();
+                    stateIndex.put(nextState, nextIndex);
+                    stateList.add(nextState);
+                    fringe.add(nextState);
+                }
+                row[column] = nextIndex;
+            }
+            rows.add(row);
+        }
+
+        StateFactory factory = new StateFactory();
+        states = new State[stateList.size()];
+        finalFlags = new boolean[states.length];
+        table = new int[states.length * columns];
+        for (int i = 0; i < states.length; i++) {
+            State original = stateList.get(i);
+            states[i] = factory.newState(original.getTokens());
+            states[i].setFinal(original.isFinal());
+            finalFlags[i] = original.isFinal();
+            System.arraycopy(rows.get(i), 0, table, i * columns, columns);
+        }
+        findDeadStates();
+    }
+
+    /**
+     * Marks every state that cannot reach a final state, by walking the
+     * transitions backwards from the final states.
+     */
+    private void findDeadStates() {
+        int[] predecessorStart = new int[states.length + 1];
+        for (int next : table) {
+            if (next != NO_STATE) predecessorStart[next + 1]++;
+        }
+        for (int i = 1; i < predecessorStart.length; i++) {
+            predecessorStart[i] += predecessorStart[i - 1];
+        }
+        int[] predecessors = new int[predecessorStart[states.length]];
+        int[] fill = new int[states.length];
+        for (int i = 0; i < table.length; i++) {
+            int next = table[i];
+            if (next != NO_STATE) predecessors[predecessorStart[next] + fill[next]++] = i / columns;
+        }
+
+        deadFlags = new boolean[states.length];
+        Arrays.fill(deadFlags, true);
+        int[] fringe = new int[states.length];
+        int fringeSize = 0;
+        for (int i = 0; i < states.length; i++) {
+            if (finalFlags[i]) {
+                deadFlags[i] = false;
+                fringe[fringeSize++] = i;
+            }
+        }
+        while (fringeSize > 0) {
+            int state = fringe[--fringeSize];
+            for (int j = predecessorStart[state]; j < predecessorStart[state + 1]; j++) {
+                if (deadFlags[predecessors[j]]) {
+                    deadFlags[predecessors[j]] = false;
+                    fringe[fringeSize++] = predecessors[j];
+                }
+            }
+        }
+    }
+
+    /**
+     * The number of states in the table.
+     * @return The state count.
+     */
+    public int stateCount() {
+        return states.length;
+    }
+
+    /**
+     * The index of the start state.
+     * @return Always 0, since states are numbered from the start state.
+     */
+    public int startIndex() {
+        return 0;
+    }
+
+    /**
+     * Looks up the next state without going through State objects.
+     * @param fromIndex The index of the state to move from
+     * @param letter The letter to move over
+     * @return The index of the next state, or -1 if there is no transition.
+     */
+    public int next(int fromIndex, char letter) {
+        int column = partition.classOf(letter);
+        if (column < 0) return NO_STATE;
+        return table[fromIndex * columns + column];
+    }
+
+    /**
+     * The alphabet partition whose class ids are the columns of the table.
+     * @return The partition.
+     */
+    public AlphabetPartition partition() {
+        return partition;
+    }
+
+    /**
+     * Whether the state with the given index is final.
+     * @param index A state index
+     * @return True if the state is final.
+     */
+    public boolean isFinal(int index) {
+        return finalFlags[index];
+    }
+
+    /**
+     * Whether no final state can be reached from the state with the given
+     * index.
+     * @param index A state index
+     * @return True if the state is dead.
+     */
+    public boolean isDead(int index) {
+        return deadFlags[index];
+    }
+
+    /**
+     * The state object stored at the given index.
+     * @param index A state index
+     * @return The state.
+     */
+    public State state(int index) {
+        return states[index];
+    }
+
+    /**
+     * The index of the given state.
+     * @param state A state of this DFA
+     * @return Its index, or -1 if the state is not part of this DFA.
+     */
+    public int indexOf(State state) {
+        int index = state.id();
+        if (index < 0 || index >= states.length || states[index] != state) return NO_STATE;
+        return index;
+    }
+
+    @Override
+    public State transition(State fromState, Character letter) {
+        if (fromState == null || letter == null) return null;
+        int fromIndex = indexOf(fromState);
+        if (fromIndex == NO_STATE) return null;
+        int nextIndex = next(fromIndex, letter);
+        return nextIndex == NO_STATE ? null : states[nextIndex];
+    }
+
+    @Override
+    public State startState() {
+        return states[0];
+    }
+
+    @Override
+    public Set<State> allStates() {
+        Set<State> allStates = new HashSet<State>();
+        for (State state : states) {
+            allStates.add(state);
+        }
+        return allStates;
+    }
+
+    @Override
+    public Set<Character> alphabet() {
+        return new HashSet<Character>(alphabet);
+    }
+
+    @Override
+    public Set<State> finalStates() {
+        Set<State> finalStates = new HashSet<State>();
+        for (int i = 0; i < states.length; i++) {
+            if (finalFlags[i]) finalStates.add(states[i]);
+        }
+        return finalStates;
+    }
+}
@@ -2,7 +2,6 @@ package conversion;
 
 import automata.DFA;
 import automata.NFA;
-import automata.State;
 
 /**
  * Accomplishes NFS to DFA conversion by calling NFAConverter.
@@ -10,8 +9,20 @@ import automata.State;
  */
 public class NFAtoDFA {
     public static DFA dfaFromNFA(NFA nfa) {
-        State.resetCount();
         NFAConverter converter = new NFAConverter(nfa);
         return converter.dfa();
     }
+
+    /**
+     * Converts on a fork/join pool of the given size. The result is the same
+     * DFA the sequential conversion builds, whatever the parallelism.
+     * @param nfa The NFA to convert.
+     * @param parallelism The number of worker threads; 1 converts on the 
+     * calling thread.
+     * @return The DFA.
+     */
+    public static DFA dfaFromNFA(NFA nfa, int parallelism) {
+        NFAConverter converter = new NFAConverter(nfa, parallelism);
+        return converter.dfa();
+    }
 }
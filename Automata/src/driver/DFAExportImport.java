@@ -4,6 +4,7 @@ package driver;
 import automata.DFA;
 import automata.MapBasedDFA;
 import automata.State;
+import automata.StateFactory;
 import automata.Token;
 import java.io.BufferedWriter;
 import java.io.File;
@@ -98,7 +99,7 @@ public class DFAExportImport {
             HashMap<String, String[]> statesTransitions = new HashMap<String, String[]>();
             List<String> statesToBeParsed = new LinkedList<String>();
 
-            State.resetCount();
+            StateFactory stateFactory = new StateFactory();
             String startStateString = scan.nextLine();
             if (!startStateString.startsWith("Start:")) {
                 System.out.println("Error: Invalid DFA format");
@@ -143,11 +144,11 @@ public class DFAExportImport {
                 tokenMap.put(state, tokens);
             }
 
-            State startState = new State();
+            State startState = stateFactory.newState();
             stringToStateMap.put(startStateString, startState);
             MapBasedDFA returnDFA = new MapBasedDFA(startState);
 
-            searchAndAddStates(startStateString, statesToBeParsed, stringToStateMap, statesTransitions, alphabet, finalStateSet, returnDFA);
+            searchAndAddStates(startStateString, statesToBeParsed, stringToStateMap, statesTransitions, alphabet, finalStateSet, returnDFA, stateFactory);
 
             for(String currStateString: tokenMap.keySet()) {
                 State currState = stringToStateMap.get(currStateString);
@@ -171,7 +172,7 @@ public class DFAExportImport {
         }
     }
 
-    private static void searchAndAddStates(String currStateString, List<String> statesToBeParsed, HashMap<String, State> stringToStateMap, HashMap<String, String[]> statesTransitions, String[] alphabet, Set<String> finalStates, MapBasedDFA dfa) {
+    private static void searchAndAddStates(String currStateString, List<String> statesToBeParsed, HashMap<String, State> stringToStateMap, HashMap<String, String[]> statesTransitions, String[] alphabet, Set<String> finalStates, MapBasedDFA dfa, StateFactory stateFactory) {
         if (!statesToBeParsed.contains(currStateString)) return;
 
         State currState = stringToStateMap.get(currStateString);
@@ -183,13 +184,13 @@ public class DFAExportImport {
             if (stringToStateMap.containsKey(nextStateString)) {
                 nextState = stringToStateMap.get(nextStateString);
             } else {
-                nextState = new State();
+                nextState = stateFactory.newState();
                 stringToStateMap.put(nextStateString, nextState);
             }
             if (finalStates.contains(nextStateString)) nextState.setFinal(true);
             dfa.addTransition(currState, transitionLetter, nextState);
 
-            searchAndAddStates(nextStateString, statesToBeParsed, stringToStateMap, statesTransitions, alphabet, finalStates, dfa);
+            searchAndAddStates(nextStateString, statesToBeParsed, stringToStateMap, statesTransitions, alphabet, finalStates, dfa, stateFactory);
         }
     }
 }
@@ -16,11 +16,14 @@ import javax.swing.JFileChooser;
 import javax.swing.JOptionPane;
 
 import exceptions.SyntaxErrorException;
-import minimization.DFAMinimizer;
+import minimization.HopcroftMinimizer;
 
 public class Main {
 
     public static File directory;
+    // Threads the NFA to DFA conversion runs on; the DFA is the same for any number
+    private static final int PARALLELISM = Integer.getInteger("automata.dfaParallelism",
+            Runtime.getRuntime().availableProcessors());
 
     /**
      * Creates the DFA and ScannerDriver using the files containing the regexes
@@ -56,7 +59,8 @@ public class Main {
                 dfa = loadDFA();
             }
         } else {
-            if (args[0].equalsIgnoreCase("--createDFA") || args[0].equalsIgnoreCase("--run")) {
+            if (args[0].equalsIgnoreCase("--createDFA") || args[0].equalsIgnoreCase("--run")
+                    || args[0].equalsIgnoreCase("--createScanner")) {
                 dfa = generateDFA(args[1]);
             } else {
                 dfa = loadDFA(args[1]);
@@ -72,6 +76,10 @@ public class Main {
         } else if (args.length > 0 && args[0].equalsIgnoreCase("--createDFA")) {
             saveDFA(dfa, args[2]);
             System.exit(0);
+        } else if (args.length > 0 && args[0].equalsIgnoreCase("--createScanner")) {
+            File scanner = new ScannerGenerator(dfa, args[2], new File(args[1]).getName()).writeTo(new File(args[3]));
+            System.out.println("Wrote " + scanner.getPath());
+            System.exit(0);
         } else if (args.length > 3 && args[3].equalsIgnoreCase("--saveDFA")) {
             saveDFA(dfa, args[4]);
         }
@@ -110,9 +118,15 @@ public class Main {
             System.out.println(" - Takes 'input' lex. specs and saves the resulting DFA to 'output'");
             System.out.println(" - 'input' and 'output' can be any filename");
             System.out.println();
+            System.out.println("Main --createScanner 'input' 'class' 'outputDir'");
+            System.out.println(" - Takes 'input' lex. specs and writes a standalone scanner for them");
+            System.out.println(" - 'class' is the qualified class name, written below 'outputDir'");
+            System.out.println();
             System.out.println("Main --runDFA 'dfa' 'tests'");
             System.out.println(" - Takes the input dfa and runs it against tests, printing results");
             System.out.println(" - 'dfa' and 'tests' can be any filename");
+            System.out.println();
+            System.out.println("-Dautomata.dfaParallelism=n sets the threads used to build DFAs from specs");
             System.exit(0);
         }
         if (args.length == 3) {
@@ -120,6 +134,9 @@ public class Main {
                 return;
             }
         }
+        if (args.length == 4 && args[0].equalsIgnoreCase("--createScanner")) {
+            return;
+        }
         if (args.length == 5) {
             if (args[0].equalsIgnoreCase("--run") && args[3].equalsIgnoreCase("--saveDFA")) {
                 return;
@@ -178,19 +195,19 @@ public class Main {
         for (State s : finalStates) {
             System.out.println(s.getName());
         }       
-        DFA dfa = NFAtoDFA.dfaFromNFA(nfa);
-        //dfa = DFAMinimizer.minimize(dfa);
+        DFA dfa = NFAtoDFA.dfaFromNFA(nfa, PARALLELISM);
+        dfa = HopcroftMinimizer.minimize(dfa);
 
-        return dfa;
+        return new TableBasedDFA(dfa);
     }
 
     private static DFA generateDFA(String fileName) throws FileNotFoundException, IOException, SyntaxErrorException {
     	FinalNFA NFAgen = new FinalNFA();
     	NFA nfa  = NFAgen.generate(fileName);
-        DFA dfa = NFAtoDFA.dfaFromNFA(nfa);
-        //dfa = DFAMinimizer.minimize(dfa);
+        DFA dfa = NFAtoDFA.dfaFromNFA(nfa, PARALLELISM);
+        dfa = HopcroftMinimizer.minimize(dfa);
 
-        return dfa;
+        return new TableBasedDFA(dfa);
     }
 
     private static void saveDFA(DFA dfa) {
@@ -0,0 +1,305 @@
+package driver;
+
+import automata.AlphabetPartition;
+import automata.DFA;
+import automata.State;
+import automata.TableBasedDFA;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes a standalone Java scanner class for a DFA.
+ *
+ * The generated class needs nothing from this project. Its states are ints
+ * and it runs on two int tables: a map from characters to letter classes and
+ * the transition table over those classes. The tables are packed into string
+ * constants, since a large array initializer would not fit in the 64KB limit
+ * of a class initializer, and unpacked once when the class loads. The token
+ * accepted by each state is looked up with a switch on the state.
+ *
+ * The class offers next, isFinal, isDead, tokenOf, matches and longestMatch,
+ * and a main method that prints the longest tokens of the files it is given.
+ */
+public class ScannerGenerator {
+    // Characters per string constant. Each takes at most 3 bytes in the
+    // class file, which allows at most 65535 bytes per constant.
+    private static final int CHUNK = 20000;
+
+    private final TableBasedDFA dfa;
+    private final String packageName;
+    private final String simpleName;
+    private final String source;
+
+    /**
+     * Creates a generator.
+     * @param dfa The DFA to generate a scanner for
+     * @param className The fully qualified name of the class to write
+     * @param source The name of the specification, mentioned in the class comment
+     */
+    public ScannerGenerator(DFA dfa, String className, String source) {
+        this.dfa = dfa instanceof TableBasedDFA ? (TableBasedDFA) dfa : new TableBasedDFA(dfa);
+        if (this.dfa.stateCount() >= Character.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many states to generate a scanner: " + this.dfa.stateCount());
+        }
+        int dot = className.lastIndexOf('.');
+        this.packageName = dot < 0 ? null : className.substring(0, dot);
+        this.simpleName = className.substring(dot + 1);
+        this.source = source;
+    }
+
+    /**
+     * Writes the scanner class below a source directory, in the directory of
+     * its package.
+     * @param outputDir The source directory
+     * @return The file written.
+     * @throws IOException thrown if the file cannot be written.
+     */
+    public File writeTo(File outputDir) throws IOException {
+        File dir = packageName == null ? outputDir : new File(outputDir, packageName.replace('.', File.separatorChar));
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+        File file = new File(dir, simpleName + ".java");
+        Writer out = new FileWriter(file);
+        try {
+            out.write(generate());
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    /**
+     * Builds the source code of the scanner class.
+     * @return The Java source.
+     */
+    public String generate() {
+        AlphabetPartition partition = dfa.partition();
+        int states = dfa.stateCount();
+        int classes = partition.classCount();
+
+        int mapLength = 0;
+        for (int cls = 0; cls < classes; cls++) {
+            for (char letter : partition.members(cls)) {
+                mapLength = Math.max(mapLength, letter + 1);
+            }
+        }
+        int[] classMap = new int[mapLength];
+        for (int letter = 0; letter < mapLength; letter++) {
+            classMap[letter] = partition.classOf((char) letter);
+        }
+        int[] table = new int[states * classes];
+        int[] flags = new int[states];
+        for (int state = 0; state < states; state++) {
+            for (int cls = 0; cls < classes; cls++) {
+                table[state * classes + cls] = dfa.next(state, partition.representative(cls));
+            }
+            flags[state] = (dfa.isFinal(state) ? 1 : 0) | (dfa.isDead(state) ? 2 : 0);
+        }
+
+        // States grouped by the token they accept, for the tokenOf switch
+        Map<String, List<Integer>> tokenStates = new LinkedHashMap<String, List<Integer>>();
+        for (int state = 0; state < states; state++) {
+            State original = dfa.state(state);
+            if (!original.isFinal() || original.getTokens().isEmpty()) continue;
+            String token = original.topToken().getValue();
+            if (!tokenStates.containsKey(token)) {
+                tokenStates.put(token, new ArrayList<Integer>());
+            }
+            tokenStates.get(token).add(state);
+        }
+
+        StringBuilder java = new StringBuilder();
+        java.append("// Generated by driver.ScannerGenerator");
+        if (source != null) {
+            java.append(" from ").append(source);
+        }
+        java.append(". Do not edit.\n");
+        if (packageName != null) {
+            java.append("package ").append(packageName).append(";\n");
+        }
+        java.append("\n");
+        java.append("import java.io.BufferedReader;\n");
+        java.append("import java.io.FileReader;\n");
+        java.append("import java.io.IOException;\n");
+        java.append("\n");
+        java.append("/**\n");
+        java.append(" * A scanner generated from a minimized DFA with ").append(states).append(" states and\n");
+        java.append(" * ").append(classes).append(" letter classes. States are numbered from 0 and -1 means no state.\n");
+        java.append(" */\n");
+        java.append("public final class ").append(simpleName).append(" {\n");
+        java.append("    /** The start state. */\n");
+        java.append("    public static final int START = ").append(dfa.startIndex()).append(";\n");
+        java.append("\n");
+        java.append("    private static final int CLASSES = ").append(classes).append(";\n");
+        java.append("    private static final int[] CLASS_MAP = unpack(");
+        appendPacked(java, classMap);
+        java.append(");\n");
+        java.append("    private static final int[] TABLE = unpack(");
+        appendPacked(java, table);
+        java.append(");\n");
+        java.append("    private static final int[] FLAGS = unpack(");
+        appendPacked(java, flags);
+        java.append(");\n");
+        java.append("\n");
+        java.append("    private ").append(simpleName).append("() {\n");
+        java.append("    }\n");
+        java.append("\n");
+        java.append("    private static int[] unpack(String... chunks) {\n");
+        java.append("        int length = 0;\n");
+        java.append("        for (String chunk : chunks) {\n");
+        java.append("            length += chunk.length();\n");
+        java.append("        }\n");
+        java.append("        int[] values = new int[length];\n");
+        java.append("        int i = 0;\n");
+        java.append("        for (String chunk : chunks) {\n");
+        java.append("            for (int j = 0; j < chunk.length(); j++) {\n");
+        java.append("                values[i++] = chunk.charAt(j) - 1;\n");
+        java.append("            }\n");
+        java.append("        }\n");
+        java.append("        return values;\n");
+        java.append("    }\n");
+        java.append("\n");
+        java.append("    /**\n");
+        java.append("     * The state reached from a state over a letter, or -1.\n");
+        java.append("     */\n");
+        java.append("    public static int next(int state, char letter) {\n");
+        java.append("        if (letter >= CLASS_MAP.length) return -1;\n");
+        java.append("        int cls = CLASS_MAP[letter];\n");
+        java.append("        return cls < 0 ? -1 : TABLE[state * CLASSES + cls];\n");
+        java.append("    }\n");
+        java.append("\n");
+        java.append("    public static boolean isFinal(int state) {\n");
+        java.append("        return (FLAGS[state] & 1) != 0;\n");
+        java.append("    }\n");
+        java.append("\n");
+        java.append("    /**\n");
+        java.append("     * Whether no final state can be reached from a state.\n");
+        java.append("     */\n");
+        java.append("    public static boolean isDead(int state) {\n");
+        java.append("        return (FLAGS[state] & 2) != 0;\n");
+        java.append("    }\n");
+        java.append("\n");
+        java.append("    /**\n");
+        java.append("     * The token accepted in a state, or null if the state is not final.\n");
+        java.append("     */\n");
+        java.append("    public static String tokenOf(int state) {\n");
+        java.append("        switch (state) {\n");
+        for (Map.Entry<String, List<Integer>> entry : tokenStates.entrySet()) {
+            for (int state : entry.getValue()) {
+                java.append("            case ").append(state).append(":\n");
+            }
+            java.append("                return \"").append(escape(entry.getKey())).append("\";\n");
+        }
+        java.append("            default:\n");
+        java.append("                return null;\n");
+        java.append("        }\n");
+        java.append("    }\n");
+        java.append("\n");
+        java.append("    /**\n");
+        java.append("     * Whether the whole input is accepted.\n");
+        java.append("     */\n");
+        java.append("    public static boolean matches(CharSequence input) {\n");
+        java.append("        int state = START;\n");
+        java.append("        for (int i = 0; i < input.length() && state >= 0; i++) {\n");
+        java.append("            state = next(state, input.charAt(i));\n");
+        java.append("        }\n");
+        java.append("        return state >= 0 && isFinal(state);\n");
+        java.append("    }\n");
+        java.append("\n");
+        java.append("    /**\n");
+        java.append("     * The end (exclusive) of the longest accepted prefix of the input from\n");
+        java.append("     * start on, or -1 if there is none.\n");
+        java.append("     */\n");
+        java.append("    public static int longestMatch(CharSequence input, int start) {\n");
+        java.append("        int state = START;\n");
+        java.append("        int end = isFinal(state) ? start : -1;\n");
+        java.append("        for (int i = start; i < input.length(); i++) {\n");
+        java.append("            state = next(state, input.charAt(i));\n");
+        java.append("            if (state < 0 || isDead(state)) break;\n");
+        java.append("            if (isFinal(state)) end = i + 1;\n");
+        java.append("        }\n");
+        java.append("        return end;\n");
+        java.append("    }\n");
+        java.append("\n");
+        java.append("    /**\n");
+        java.append("     * Prints the longest tokens of each line of the given files.\n");
+        java.append("     */\n");
+        java.append("    public static void main(String[] args) throws IOException {\n");
+        java.append("        for (String file : args) {\n");
+        java.append("            BufferedReader in = new BufferedReader(new FileReader(file));\n");
+        java.append("            try {\n");
+        java.append("                for (String line = in.readLine(); line != null; line = in.readLine()) {\n");
+        java.append("                    int start = 0;\n");
+        java.append("                    while (start < line.length()) {\n");
+        java.append("                        int end = longestMatch(line, start);\n");
+        java.append("                        if (end <= start) {\n");
+        java.append("                            start++;\n");
+        java.append("                            continue;\n");
+        java.append("                        }\n");
+        java.append("                        int state = START;\n");
+        java.append("                        for (int i = start; i < end; i++) {\n");
+        java.append("                            state = next(state, line.charAt(i));\n");
+        java.append("                        }\n");
+        java.append("                        System.out.println(line.substring(start, end) + \": \" + tokenOf(state));\n");
+        java.append("                        start = end;\n");
+        java.append("                    }\n");
+        java.append("                }\n");
+        java.append("            } finally {\n");
+        java.append("                in.close();\n");
+        java.append("            }\n");
+        java.append("        }\n");
+        java.append("    }\n");
+        java.append("}\n");
+        return java.toString();
+    }
+
+    /**
+     * Appends an int table as string constants, one char per value plus one.
+     */
+    private static void appendPacked(StringBuilder java, int[] values) {
+        if (values.length == 0) {
+            java.append("\"\"");
+            return;
+        }
+        for (int start = 0; start < values.length; start += CHUNK) {
+            java.append("\n            ");
+            if (start > 0) {
+                java.append(", ");
+            }
+            java.append('"');
+            for (int i = start; i < Math.min(values.length, start + CHUNK); i++) {
+                appendChar(java, (char) (values[i] + 1));
+            }
+            java.append('"');
+        }
+    }
+
+    /**
+     * Appends a character for a string literal. Unicode escapes are only used
+     * above 0xFF, since javac translates them before it reads the literal.
+     */
+    private static void appendChar(StringBuilder java, char c) {
+        if (c >= 0x20 && c < 0x7F && c != '"' && c != '\\') {
+            java.append(c);
+        } else if (c <= 0xFF) {
+            java.append('\\').append(Integer.toOctalString(c | 0x200).substring(1));
+        } else {
+            java.append(String.format("\\u%04x", (int) c));
+        }
+    }
+
+    private static String escape(String text) {
+        StringBuilder escaped = new StringBuilder();
+        for (int i = 0; i < text.length(); i++) {
+            appendChar(escaped, text.charAt(i));
+        }
+        return escaped.toString();
+    }
+}
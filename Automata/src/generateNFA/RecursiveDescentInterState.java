@@ -1,24 +1,54 @@
 package generateNFA;
 
+import java.util.Set;
+
 import automata.NFA;
 
 
 /**
  * A recursive descent intermediate state consisting of a regular expression in a String and an NFA.
+ *
+ * Only the pieces the parser looks at again keep their regex: the * and +
+ * of a repetition, and the character sets and class names an exclude set is
+ * taken from. Joining the text of every concatenation and union would cost
+ * time quadratic in the length of the regex, so larger states have none.
  * @author 
  */
 public class RecursiveDescentInterState {
 	private String currentRegex;
 	private NFA currentNFA;
+	private Fragment fragment;
+	private Set<Character> chars;
+	private String tokenName;
 	
 	public RecursiveDescentInterState(String regex, NFA NFA){
 		this.currentRegex = regex;
 		this.currentNFA = NFA;
 	}
 
+	/**
+	 * An intermediate state for a part of the regex that has been built into
+	 * the NFA.
+	 */
+	RecursiveDescentInterState(String regex, NFA NFA, Fragment fragment){
+		this(regex, NFA);
+		this.fragment = fragment;
+	}
+
+	/**
+	 * An intermediate state for a set of characters that has not been built
+	 * into the NFA yet, since it may still be combined with other sets.
+	 * @param tokenName The name for the tokens of the set's end state.
+	 */
+	RecursiveDescentInterState(String regex, NFA NFA, Set<Character> chars, String tokenName){
+		this(regex, NFA);
+		this.chars = chars;
+		this.tokenName = tokenName;
+	}
+
         /**
          * Reads out the current regular expression for this intermediate state.
-         * @return Regular expression String.
+         * @return Regular expression String, or null if the state does not keep it.
          */
 	public String getCurrentRegex() {
 		return currentRegex;
@@ -47,6 +77,18 @@ public class RecursiveDescentInterState {
 	public void setCurrentNFA(NFA currentNFA) {
 		this.currentNFA = currentNFA;
 	}
+
+	Fragment getFragment() {
+		return fragment;
+	}
+
+	Set<Character> getChars() {
+		return chars;
+	}
+
+	String getTokenName() {
+		return tokenName;
+	}
 	
 	
 }
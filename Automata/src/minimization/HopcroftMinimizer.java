@@ -0,0 +1,268 @@
+package minimization;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+
+import automata.AlphabetPartition;
+import automata.DFA;
+import automata.MapBasedDFA;
+import automata.State;
+import automata.StateFactory;
+import automata.TableBasedDFA;
+
+/**
+ * Minimizes a DFA with Hopcroft's partition refinement in O(n log n).
+ *
+ * States start out grouped by whether they are final and, for final states,
+ * by the token stack they carry, in stack order, so two accepting states are
+ * only merged when they report the same tokens in the same order. Blocks are
+ * then split against splitter blocks taken from a worklist; when a block
+ * that is not waiting in the worklist splits, only its smaller half is
+ * added.
+ *
+ * Missing transitions go to a virtual dead state so that partial DFAs are
+ * handled too. The work is done on the int arrays of a TableBasedDFA over
+ * letter classes instead of single characters.
+ */
+public class HopcroftMinimizer {
+    private TableBasedDFA table;
+    private AlphabetPartition partition;
+    private int classes;
+    private int sink;
+    private int total;
+
+    // Inverse transitions in compressed rows: the sources reaching target t
+    // over class c are inverse[inverseStart[t * classes + c] ...
+    // inverseStart[t * classes + c + 1]).
+    private int[] inverseStart;
+    private int[] inverse;
+
+    // Blocks are ranges of elements. The first marked[b] entries of block b
+    // are the states marked during the current split.
+    private int[] elements;
+    private int[] location;
+    private int[] blockOf;
+    private int[] blockFirst;
+    private int[] blockEnd;
+    private int[] marked;
+    private int blockCount;
+
+    /**
+     * Builds the minimal DFA accepting the same language with the same tokens.
+     * @param dfa The DFA to minimize. It is not modified.
+     * @return A new, minimal DFA.
+     */
+    public static DFA minimize(DFA dfa) {
+        TableBasedDFA table = dfa instanceof TableBasedDFA
+                ? (TableBasedDFA) dfa : new TableBasedDFA(dfa);
+        return new HopcroftMinimizer(table).minimize();
+    }
+
+    private HopcroftMinimizer(TableBasedDFA table) {
+        this.table = table;
+        this.partition = table.partition();
+        this.classes = partition.classCount();
+        this.sink = table.stateCount();
+        this.total = sink + 1;
+    }
+
+    private DFA minimize() {
+        buildInverse();
+        initialBlocks();
+        refine();
+        return buildDFA();
+    }
+
+    private int target(int state, int cls) {
+        if (state == sink) return sink;
+        int next = table.next(state, partition.representative(cls));
+        return next < 0 ? sink : next;
+    }
+
+    private void buildInverse() {
+        inverseStart = new int[total * classes + 1];
+        for (int state = 0; state < total; state++) {
+            for (int cls = 0; cls < classes; cls++) {
+                inverseStart[target(state, cls) * classes + cls + 1]++;
+            }
+        }
+        for (int i = 1; i < inverseStart.length; i++) {
+            inverseStart[i] += inverseStart[i - 1];
+        }
+        inverse = new int[total * classes];
+        int[] fill = new int[total * classes];
+        for (int state = 0; state < total; state++) {
+            for (int cls = 0; cls < classes; cls++) {
+                int slot = target(state, cls) * classes + cls;
+                inverse[inverseStart[slot] + fill[slot]++] = state;
+            }
+        }
+    }
+
+    private void initialBlocks() {
+        HashMap<Object, Integer> keys = new HashMap<Object, Integer>();
+        int[] initial = new int[total];
+        int[] sizes = new int[total];
+        for (int state = 0; state < total; state++) {
+            Object key;
+            if (state != sink && table.isFinal(state)) {
+                // Ordered, since the merged state keeps one stack and its top
+                // token is the one reported
+                key = new ArrayList<Object>(table.state(state).getTokens());
+            } else {
+                key = Boolean.FALSE;
+            }
+            Integer block = keys.get(key);
+            if (block == null) {
+                block = keys.size();
+                keys.put(key, block);
+            }
+            initial[state] = block;
+            sizes[block]++;
+        }
+
+        blockCount = keys.size();
+        blockFirst = new int[total];
+        blockEnd = new int[total];
+        marked = new int[total];
+        for (int block = 1; block < blockCount; block++) {
+            blockFirst[block] = blockFirst[block - 1] + sizes[block - 1];
+        }
+        for (int block = 0; block < blockCount; block++) {
+            blockEnd[block] = blockFirst[block];
+        }
+
+        elements = new int[total];
+        location = new int[total];
+        blockOf = new int[total];
+        for (int state = 0; state < total; state++) {
+            int block = initial[state];
+            location[state] = blockEnd[block];
+            elements[blockEnd[block]++] = state;
+            blockOf[state] = block;
+        }
+    }
+
+    private void refine() {
+        Deque<Integer> worklist = new ArrayDeque<Integer>();
+        boolean[] waiting = new boolean[total];
+        for (int block = 0; block < blockCount; block++) {
+            worklist.add(block);
+            waiting[block] = true;
+        }
+
+        int[] splitter = new int[total];
+        int[] touched = new int[total];
+        while (!worklist.isEmpty()) {
+            int block = worklist.poll();
+            waiting[block] = false;
+
+            // The splitter block may itself split below, so work on a copy
+            int size = blockEnd[block] - blockFirst[block];
+            System.arraycopy(elements, blockFirst[block], splitter, 0, size);
+
+            for (int cls = 0; cls < classes; cls++) {
+                int touchedCount = 0;
+                for (int i = 0; i < size; i++) {
+                    int slot = splitter[i] * classes + cls;
+                    for (int j = inverseStart[slot]; j < inverseStart[slot + 1]; j++) {
+                        int source = inverse[j];
+                        int sourceBlock = blockOf[source];
+                        int markedEnd = blockFirst[sourceBlock] + marked[sourceBlock];
+                        if (location[source] < markedEnd) continue;
+                        if (marked[sourceBlock] == 0) touched[touchedCount++] = sourceBlock;
+                        mark(source);
+                    }
+                }
+
+                for (int i = 0; i < touchedCount; i++) {
+                    int touchedBlock = touched[i];
+                    int newBlock = split(touchedBlock);
+                    if (newBlock < 0) continue;
+                    int oldSize = blockEnd[touchedBlock] - blockFirst[touchedBlock];
+                    int newSize = blockEnd[newBlock] - blockFirst[newBlock];
+                    if (waiting[touchedBlock] || newSize <= oldSize) {
+                        worklist.add(newBlock);
+                        waiting[newBlock] = true;
+                    } else {
+                        worklist.add(touchedBlock);
+                        waiting[touchedBlock] = true;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Moves a state to the marked front of its block.
+     */
+    private void mark(int state) {
+        int block = blockOf[state];
+        int position = location[state];
+        int front = blockFirst[block] + marked[block]++;
+        int other = elements[front];
+        elements[position] = other;
+        location[other] = position;
+        elements[front] = state;
+        location[state] = front;
+    }
+
+    /**
+     * Splits the marked states off into a new block.
+     * @return The new block, or -1 if every state was marked.
+     */
+    private int split(int block) {
+        int markedCount = marked[block];
+        marked[block] = 0;
+        if (markedCount == blockEnd[block] - blockFirst[block]) return -1;
+
+        int newBlock = blockCount++;
+        blockFirst[newBlock] = blockFirst[block];
+        blockEnd[newBlock] = blockFirst[block] + markedCount;
+        blockFirst[block] = blockEnd[newBlock];
+        for (int i = blockFirst[newBlock]; i < blockEnd[newBlock]; i++) {
+            blockOf[elements[i]] = newBlock;
+        }
+        return newBlock;
+    }
+
+    /**
+     * Creates one state per block, copying the tokens and final flag of the
+     * block's first original state. The virtual dead state is left out unless
+     * real states were merged into it.
+     */
+    private DFA buildDFA() {
+        StateFactory factory = new StateFactory();
+        State[] blockStates = new State[blockCount];
+        for (int block = 0; block < blockCount; block++) {
+            int representative = -1;
+            for (int i = blockFirst[block]; i < blockEnd[block]; i++) {
+                int element = elements[i];
+                if (element != sink && (representative < 0 || element < representative)) {
+                    representative = element;
+                }
+            }
+            if (representative < 0) continue;
+            State original = table.state(representative);
+            blockStates[block] = factory.newState(original.getTokens());
+            blockStates[block].setFinal(original.isFinal());
+        }
+
+        MapBasedDFA minimized = new MapBasedDFA(blockStates[blockOf[table.startIndex()]]);
+        for (int block = 0; block < blockCount; block++) {
+            if (blockStates[block] == null) continue;
+            int representative = elements[blockFirst[block]];
+            if (representative == sink) representative = elements[blockFirst[block] + 1];
+            for (int cls = 0; cls < classes; cls++) {
+                State toState = blockStates[blockOf[target(representative, cls)]];
+                if (toState == null) continue;
+                for (char letter : partition.members(cls)) {
+                    minimized.addTransition(blockStates[block], letter, toState);
+                }
+            }
+        }
+        return minimized;
+    }
+}